@@ -0,0 +1,89 @@
+package application;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import people.FamilyManager;
+
+/**
+ * Runs a generated script through a {@link Batch} against a journaling manager:
+ * families, then people with labels, children linked to earlier people, edits,
+ * removals and a query every thousand commands. Afterwards the log and journal
+ * are loaded into a new manager, which must hold everyone not removed.
+ *
+ * <pre>
+ * java -cp bin application.BatchLoad [commands]
+ * </pre>
+ */
+public class BatchLoad {
+
+	public static void main(String[] args) throws Exception {
+		int commands = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int families = Math.max(1, commands / 1000);
+
+		StringBuilder script = new StringBuilder();
+		for (int f = 0; f < families; f++)
+			script.append("add-family,B").append(f).append('\n');
+		int people = 0;
+		int removed = 0;
+		int linked = 2;
+		for (int i = families; i < commands; i++) {
+			int kind = i % 10;
+			if (i % 1000 == 0) {
+				script.append("query,first-name,First").append(people / 2).append('\n');
+			} else if (kind < 5 || people < 3) {
+				script.append("add-person,B").append(people % families).append(",First").append(people)
+						.append(",Batch").append(people % 7).append(",19").append(10 + people % 90)
+						.append("-06-01,,").append(people % 2 == 0 ? "f" : "m").append(",p").append(people)
+						.append('\n');
+				people++;
+			} else if (kind < 8) {
+				// parents added before their child keep the links acyclic
+				int child = linked++;
+				script.append("add-child,$p").append(child - 2).append(",$p").append(child - 1).append(",$p")
+						.append(child).append('\n');
+			} else if (kind < 9) {
+				script.append("edit,$p").append(i % people).append(",Edited").append(i).append(",,,,\n");
+			} else {
+				// someone added and removed again, under a label nothing else names
+				script.append("add-person,B0,Again,Batch0,,,o,r").append(removed).append('\n');
+				script.append("remove,$r").append(removed).append('\n');
+				removed++;
+			}
+		}
+
+		File log = File.createTempFile("batchload", ".txt");
+		for (String suffix : new String[] { "", ".journal", ".snapshot" })
+			new File(log.getPath() + suffix).deleteOnExit();
+		FamilyManager manager = new FamilyManager();
+		manager.load(log, false);
+		manager.openJournal(log);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(output, false, StandardCharsets.UTF_8);
+		long start = System.nanoTime();
+		boolean ran = new Batch(manager, out).run(new StringReader(script.toString()));
+		manager.commit();
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		manager.closeJournal();
+		out.flush();
+		String report = output.toString(StandardCharsets.UTF_8);
+		System.out.println(report.substring(report.lastIndexOf("Ran ")).strip());
+		System.out.printf("Run and committed in %d ms%n", millis);
+
+		FamilyManager reloaded = new FamilyManager();
+		reloaded.load(log, false);
+		reloaded.openJournal(log);
+		int found = 0;
+		for (int i = 0; i < 7; i++)
+			found += reloaded.findByLastName("Batch" + i).size();
+		reloaded.closeJournal();
+		boolean ok = ran && found == people;
+		if (found != people)
+			System.out.println("reloaded " + found + " people, expected " + people);
+		System.out.println(ok ? "OK" : "FAILED");
+		System.exit(ok ? 0 : 1);
+	}
+}
@@ -0,0 +1,127 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import people.FamilyManager;
+
+/**
+ * Drives scripted sessions against a {@link Server} through local sockets,
+ * all at once, each client on its own virtual thread. Every session creates a
+ * family, adds people to it, searches for them and exits. Afterwards the
+ * server is closed, the family log and journal it kept are loaded into a new
+ * manager, and every family and person must be found there.
+ *
+ * <pre>
+ * java -cp bin application.ServerLoad [sessions] [people per session]
+ * </pre>
+ */
+public class ServerLoad {
+
+	public static void main(String[] args) throws Exception {
+		int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int people = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		File log = File.createTempFile("serverload", ".txt");
+		for (String suffix : new String[] { "", ".journal", ".snapshot" })
+			new File(log.getPath() + suffix).deleteOnExit();
+		FamilyManager manager = new FamilyManager();
+		manager.load(log, false);
+		manager.openJournal(log);
+		Server server = new Server(manager, 0, System.out);
+		Thread acceptor = Thread.ofPlatform().name("acceptor").start(server::run);
+
+		ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<String>();
+		long[] latencies = new long[sessions];
+		List<Thread> clients = new ArrayList<Thread>();
+		long start = System.nanoTime();
+		for (int i = 0; i < sessions; i++) {
+			int session = i;
+			clients.add(Thread.ofVirtual().start(() -> {
+				long begin = System.nanoTime();
+				try {
+					String output = converse(server.getPort(), script(session, people));
+					int added = output.split("Person Added with ID", -1).length - 1;
+					if (added != people)
+						failures.add("session " + session + " added " + added + " people");
+				} catch (IOException e) {
+					failures.add("session " + session + ": " + e);
+				}
+				latencies[session] = System.nanoTime() - begin;
+			}));
+		}
+		int peak = 0;
+		for (Thread client : clients) {
+			while (client.isAlive()) {
+				peak = Math.max(peak, server.getSessions());
+				client.join(10);
+			}
+		}
+		long millis = (System.nanoTime() - start) / 1_000_000;
+
+		server.close();
+		manager.closeJournal();
+		acceptor.join();
+
+		Arrays.sort(latencies);
+		System.out.printf("%d sessions of %d people: %d ms, at most %d at once, session p50 %d ms, p99 %d ms%n",
+				sessions, people, millis, peak, latencies[sessions / 2] / 1_000_000,
+				latencies[sessions * 99 / 100] / 1_000_000);
+
+		FamilyManager reloaded = new FamilyManager();
+		reloaded.load(log, false);
+		reloaded.openJournal(log);
+		for (int i = 0; i < sessions; i++) {
+			if (!reloaded.hasFamily("S" + i))
+				failures.add("family S" + i + " not saved");
+			int found = reloaded.findByLastName("Load" + i).size();
+			if (found != people)
+				failures.add("saved " + found + " people of session " + i);
+		}
+		reloaded.closeJournal();
+
+		for (String failure : failures)
+			System.out.println(failure);
+		System.out.println(failures.isEmpty() ? "OK" : failures.size() + " failures");
+		System.exit(failures.isEmpty() ? 0 : 1);
+	}
+
+	/**
+	 * @return the input of a session that adds a family and its people, searches
+	 *         for them and exits
+	 */
+	private static String script(int session, int people) {
+		StringBuilder script = new StringBuilder();
+		script.append("1 S").append(session).append('\n');
+		for (int i = 0; i < people; i++) {
+			script.append("3 S").append(session).append(" 1 First").append(i).append(" Load").append(session)
+					.append(" 19").append(50 + i % 50).append("-01-01 none ").append(i % 2 == 0 ? "f" : "m")
+					.append('\n');
+		}
+		script.append("6 Load").append(session).append('\n');
+		script.append("0\n");
+		return script.toString();
+	}
+
+	/**
+	 * Sends the script and reads everything the server says until it hangs up
+	 */
+	private static String converse(int port, String script) throws IOException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			OutputStream out = socket.getOutputStream();
+			out.write(script.getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			InputStream in = socket.getInputStream();
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,292 @@
+package people;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import people.Person.Sex;
+
+/**
+ * Shares one manager between writer threads adding people, some under IDs from
+ * blocks they reserved, linking children, editing and removing people, and
+ * reader threads looking people up, searching, walking trees, relating people,
+ * finding duplicates and writing snapshots. Checks, while they run and once
+ * they stop, that what the managers hold agrees with what the threads did:
+ * <ul>
+ * <li>no ID is handed out twice</li>
+ * <li>an ID is found exactly when its person was added and not removed</li>
+ * <li>the last name index holds every person still in the manager</li>
+ * <li>every link made is seen from both ends and closes no loop</li>
+ * <li>people found by last name keep it while writers carry on</li>
+ * <li>a tree visitor can call back into the manager while writers wait</li>
+ * <li>validating the manager finds no link held by one end only</li>
+ * <li>a snapshot written afterwards loads back the same people</li>
+ * </ul>
+ * Refusals such as removing someone already removed are expected; any runtime
+ * exception is a failure.
+ *
+ * <pre>
+ * java -cp bin people.ConcurrencyStress [writers] [readers] [seconds] [--columnar]
+ * </pre>
+ */
+public class ConcurrencyStress {
+
+	/**
+	 * IDs recently added, which writers pick parents, children and people to
+	 * remove from
+	 */
+	private static final AtomicReferenceArray<String> recent = new AtomicReferenceArray<String>(4096);
+
+	private static final AtomicLong added = new AtomicLong();
+	private static final AtomicLong removed = new AtomicLong();
+	private static final AtomicLong refused = new AtomicLong();
+	private static final AtomicLong reads = new AtomicLong();
+
+	/**
+	 * People added minus people removed, by ID
+	 */
+	private static final Map<String, Integer> live = new ConcurrentHashMap<String, Integer>();
+
+	/**
+	 * Each link made, as child, mother and father
+	 */
+	private static final ConcurrentLinkedQueue<String[]> links = new ConcurrentLinkedQueue<String[]>();
+
+	private static final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+
+	public static void main(String[] args) throws Exception {
+		int writers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int readers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		boolean columnar = args.length > 3 && args[3].equals("--columnar");
+
+		FamilyManager manager = new FamilyManager(columnar);
+		for (int i = 0; i < writers; i++)
+			manager.createNewFamily("F" + i);
+		File snapshot = File.createTempFile("stress", ".txt");
+		snapshot.deleteOnExit();
+		new File(snapshot.getPath() + ".snapshot").deleteOnExit();
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < writers; i++) {
+			int writer = i;
+			threads.add(new Thread(() -> guard(() -> write(manager, writer, running)), "writer-" + i));
+		}
+		for (int i = 0; i < readers; i++) {
+			boolean exports = i == 0;
+			threads.add(new Thread(() -> guard(() -> read(manager, exports ? snapshot : null, running)), "reader-" + i));
+		}
+		long start = System.nanoTime();
+		for (Thread thread : threads)
+			thread.start();
+		Thread.sleep(seconds * 1000L);
+		running.set(false);
+		for (Thread thread : threads)
+			thread.join();
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		System.out.printf("%d writers, %d readers, %d ms: %d added, %d removed, %d links, %d refused, %d reads%n",
+				writers, readers, millis, added.get(), removed.get(), links.size(), refused.get(), reads.get());
+
+		check(manager, snapshot, columnar);
+		for (Throwable failure : failures)
+			failure.printStackTrace();
+		System.out.println(failures.isEmpty() ? "OK" : failures.size() + " failures");
+		System.exit(failures.isEmpty() ? 0 : 1);
+	}
+
+	private static void write(FamilyManager manager, int writer, AtomicBoolean running) throws Exception {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String lastName = "Writer" + writer;
+		IdAllocator.Block block = null;
+		while (running.get()) {
+			int action = random.nextInt(10);
+			try {
+				if (action < 4) {
+					Date birth = random.nextBoolean() ? new Date(random.nextLong(0, 2_000_000_000_000L)) : null;
+					Sex sex = random.nextBoolean() ? Sex.FEMALE : Sex.MALE;
+					String id;
+					if (random.nextBoolean()) {
+						id = manager.addPerson("First" + random.nextInt(1000), lastName, birth, null, sex);
+					} else {
+						if (block == null || !block.hasNext())
+							block = manager.reserveIds(16);
+						id = block.next();
+						manager.addPerson(id, "First" + random.nextInt(1000), lastName, birth, null, sex);
+					}
+					live.merge(id, 1, Integer::sum);
+					added.incrementAndGet();
+					manager.addPersonTo("F" + writer, id);
+					recent.set(random.nextInt(recent.length()), id);
+				} else if (action < 7) {
+					String child = pick(random);
+					String mother = pick(random);
+					String father = pick(random);
+					if (child == null || mother == null || father == null)
+						continue;
+					manager.addChild(mother, father, child);
+					links.add(new String[] { child, mother, father });
+				} else if (action < 8) {
+					String id = pick(random);
+					if (id == null)
+						continue;
+					manager.removePerson(id);
+					live.merge(id, -1, Integer::sum);
+					removed.incrementAndGet();
+				} else {
+					String id = pick(random);
+					if (id == null)
+						continue;
+					manager.editPerson(id, "Edited" + random.nextInt(1000), null, null,
+							new Date(random.nextLong(0, 2_000_000_000_000L)), null);
+				}
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				refused.incrementAndGet();
+			}
+		}
+	}
+
+	private static void read(FamilyManager manager, File snapshot, AtomicBoolean running) throws Exception {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		TreeVisitor counter = (generation, personID, person) -> true;
+		while (running.get()) {
+			String id = pick(random);
+			if (id == null)
+				continue;
+			try {
+				switch (random.nextInt(8)) {
+				case 0:
+					manager.hasPerson(id);
+					break;
+				case 1:
+					// copies are read after the lock is let go, while writers go on
+					String lastName = "Writer" + random.nextInt(4);
+					for (Person person : manager.findByLastName(lastName)) {
+						if (!lastName.equals(person.getLastName()) || person.getId() == null)
+							fail("findByLastName(" + lastName + ") returned " + person);
+					}
+					break;
+				case 2:
+					manager.searchName("Frist" + random.nextInt(1000), 10);
+					break;
+				case 3:
+					// the visitor calls back into the manager while writers queue for it
+					manager.visitAncestors(id, 5, (generation, personID, person) -> {
+						manager.getFamiliesOf(personID);
+						return true;
+					});
+					break;
+				case 4:
+					manager.visitDescendants(id, 5, counter);
+					break;
+				case 5:
+					String other = pick(random);
+					if (other != null)
+						manager.relate(id, other);
+					break;
+				case 6:
+					manager.findAliveOn(new Date(random.nextLong(0, 2_000_000_000_000L)));
+					break;
+				default:
+					if (snapshot != null && random.nextInt(50) == 0)
+						manager.writeSnapshot(snapshot);
+					else if (random.nextInt(1000) == 0)
+						manager.findDuplicates(FamilyManager.LIKELY_DUPLICATE, 10);
+					else
+						manager.getFamiliesOf(id);
+				}
+				reads.incrementAndGet();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				refused.incrementAndGet();
+			}
+		}
+	}
+
+	private static void check(FamilyManager manager, File snapshot, boolean columnar) throws Exception {
+		int people = 0;
+		for (Map.Entry<String, Integer> entry : live.entrySet()) {
+			if (entry.getValue() < 0)
+				fail("ID " + entry.getKey() + " removed more often than added");
+			if (entry.getValue() > 1)
+				fail("ID " + entry.getKey() + " handed out " + entry.getValue() + " times");
+			if (manager.hasPerson(entry.getKey()) != entry.getValue() > 0)
+				fail("ID " + entry.getKey() + " held " + entry.getValue() + " times but hasPerson says "
+						+ manager.hasPerson(entry.getKey()));
+			people += Math.max(0, entry.getValue());
+		}
+		int indexed = 0;
+		for (int writer = 0; writer < 64; writer++)
+			indexed += manager.findByLastName("Writer" + writer).size();
+		if (indexed != people)
+			fail("last name index holds " + indexed + " people, but " + people + " are left");
+
+		int checked = 0;
+		for (String[] link : links) {
+			if (!manager.hasPerson(link[0]) || !manager.hasPerson(link[1]))
+				continue;
+			List<String> parents = new ArrayList<String>();
+			manager.visitAncestors(link[1], Integer.MAX_VALUE, (generation, personID, person) -> {
+				if (personID.equals(link[0]))
+					fail(link[0] + " is a child and an ancestor of " + link[1]);
+				return true;
+			});
+			manager.visitAncestors(link[0], 1, (generation, personID, person) -> parents.add(personID));
+			if (!parents.contains(link[1]) || !parents.contains(link[2]))
+				fail(link[0] + " has parents " + parents + ", not " + link[1] + " and " + link[2]);
+			if (++checked == 2000)
+				break;
+		}
+		manager.validate(violation -> {
+			if (violation.getRule() == Violation.Rule.ASYMMETRIC_LINK)
+				fail(violation.toString());
+		});
+
+		manager.writeSnapshot(snapshot);
+		FamilyManager loaded = new FamilyManager(columnar);
+		if (!loaded.readSnapshot(snapshot))
+			fail("snapshot not read back");
+		int reloaded = 0;
+		for (int writer = 0; writer < 64; writer++)
+			reloaded += loaded.findByLastName("Writer" + writer).size();
+		if (reloaded != people)
+			fail("snapshot holds " + reloaded + " people, but " + people + " are left");
+	}
+
+	/**
+	 * @return a recently added ID, or null if there is none yet
+	 */
+	private static String pick(ThreadLocalRandom random) {
+		return recent.get(random.nextInt(recent.length()));
+	}
+
+	private static void fail(String message) {
+		failures.add(new AssertionError(message));
+	}
+
+	private interface Work {
+		void run() throws Exception;
+	}
+
+	/**
+	 * Runs the work, recording anything it throws as a failure
+	 */
+	private static void guard(Work work) {
+		try {
+			work.run();
+		} catch (Throwable e) {
+			failures.add(e);
+		}
+	}
+}
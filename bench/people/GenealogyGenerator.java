@@ -0,0 +1,279 @@
+package people;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import people.Person.Sex;
+import saveIO.IsoInstant;
+import saveIO.LogWriter;
+
+/**
+ * Writes a synthetic family log of many generations, the same for the same
+ * seed. The founders are grouped into small families; every later generation
+ * is born to couples paired from the one before, the children of each couple
+ * making a family. Men and women are paired by age, and couples have between
+ * none and eight children, two or three most often, who take their father's
+ * last name. Children are born 18 to 41 years after the younger parent and
+ * while both are alive, so the dates are consistent; deaths fall 30 to 100
+ * years after birth unless that is still to come. Every child gets a
+ * {@code #link} to their mother and father.
+ * <p>
+ * Only two generations and the parents of each person are held, so logs of
+ * ten million people are written in a few hundred megabytes of heap.
+ *
+ * <pre>
+ * java -cp bin people.GenealogyGenerator [people] [file] [seed]
+ * </pre>
+ */
+public class GenealogyGenerator {
+
+	private static final String[] FEMALE = { "Mary", "Anna", "Emma", "Elizabeth", "Margaret", "Sarah", "Alice",
+			"Jane", "Catherine", "Helen", "Grace", "Ruth", "Clara", "Rose", "Ida", "Edith", "Martha", "Agnes",
+			"Louise", "Frances", "Eleanor", "Hannah", "Lucy", "Nora", "Johanna", "Ingrid", "Sofia", "Marta",
+			"Isabel", "Chiyo" };
+
+	private static final String[] MALE = { "John", "William", "James", "George", "Charles", "Thomas", "Henry",
+			"Joseph", "Edward", "Robert", "Frank", "Walter", "Arthur", "Albert", "Samuel", "David", "Peter",
+			"Hugh", "Carl", "Hans", "Erik", "Olaf", "Pedro", "Luis", "Giovanni", "Pierre", "Jan", "Kenji", "Ivan",
+			"Patrick" };
+
+	private static final String[] LAST = { "Smith", "Johnson", "Brown", "Taylor", "Miller", "Wilson", "Moore",
+			"Anderson", "Jackson", "White", "Harris", "Martin", "Thompson", "Garcia", "Martinez", "Robinson",
+			"Clark", "Lewis", "Walker", "Young", "Allen", "King", "Wright", "Scott", "Green", "Baker", "Adams",
+			"Nelson", "Hill", "Campbell", "Mitchell", "Roberts", "Carter", "Phillips", "Evans", "Turner", "Torres",
+			"Parker", "Collins", "Edwards", "Stewart", "Flores", "Morris", "Nguyen", "Murphy", "Rivera", "Cook",
+			"Rogers", "Morgan", "Peterson", "Cooper", "Reed", "Bailey", "Bell", "Gomez", "Kelly", "Howard", "Ward",
+			"Cox", "Diaz", "Richardson", "Wood", "Watson", "Brooks", "Bennett", "Gray", "James", "Reyes", "Cruz",
+			"Hughes", "Price", "Myers", "Long", "Foster", "Sanders", "Ross", "Morales", "Powell", "Sullivan",
+			"Russell", "Ortiz", "Jenkins", "Gutierrez", "Perry", "Butler", "Barnes", "Fisher", "Henderson",
+			"Coleman", "Simmons", "Patterson", "Jordan", "Reynolds", "Hamilton", "Graham", "Kim", "Gonzales",
+			"Alexander", "Ramos", "Wallace", "Griffin", "West", "Cole", "Hayes", "Chavez", "Gibson", "Bryant",
+			"Ellis", "Stevens", "Murray", "Ford", "Marshall", "Owens", "McDonald", "Harrison", "Ruiz", "Kennedy",
+			"Wells", "Alvarez", "Woods", "Mendoza", "Castillo", "Olson", "Webb", "Washington", "Tucker", "Freeman",
+			"Burns", "Henry", "Vasquez", "Snyder", "Simpson", "Crawford", "Jimenez", "Porter", "Mason", "Shaw",
+			"Gordon", "Wagner", "Hunter", "Romero", "Hicks", "Dixon", "Hunt", "Palmer", "Robertson", "Black",
+			"Holmes", "Stone", "Meyer", "Boyd", "Mills", "Warren", "Fox", "Rose", "Rice", "Moreno", "Schmidt",
+			"Patel", "Ferguson", "Nichols", "Herrera", "Medina", "Ryan", "Fernandez", "Weaver", "Daniels",
+			"Stephens", "Gardner", "Payne", "Kelley", "Dunn", "Pierce", "Arnold", "Tran", "Spencer", "Peters",
+			"Hawkins", "Grant", "Hansen", "Castro", "Hoffman", "Hart", "Elliott", "Cunningham", "Knight",
+			"Bradley", "Tanaka", "Suzuki", "Larsen", "Novak", "Kowalski", "Rossi", "Dubois", "Jansen", "Lindqvist" };
+
+	/**
+	 * Chance, in percent, of a couple having each number of children
+	 */
+	private static final int[] CHILDREN = { 8, 14, 28, 22, 13, 7, 4, 2, 2 };
+
+	/**
+	 * Year the last generation is born around
+	 */
+	private static final int LAST_YEAR = 1985;
+
+	private static final long YEAR = 31_556_952_000L;
+
+	/**
+	 * Deaths after this are yet to come
+	 */
+	private static final long NOW = 1_790_000_000_000L;
+
+	public static void main(String[] args) throws IOException {
+		int people = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		File file = new File(args.length > 1 ? args[1] : "generated-log.txt");
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+		long start = System.nanoTime();
+		int generations = generate(file, people, seed);
+		System.out.printf("%d people in %d generations written to %s in %d ms%n", people, generations, file,
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	/**
+	 * Writes a log of the count of people; person IDs are their numbers, from 0
+	 *
+	 * @return the number of generations written
+	 * @throws IOException if the file cannot be written
+	 */
+	public static int generate(File file, int people, long seed) throws IOException {
+		Random random = new Random(seed);
+		// people per generation, so the largest logs have a few dozen generations
+		int width = Math.min(people, Math.max(50, people / 30));
+		long founded = (LAST_YEAR - 1970 - (people - 1) / width * 29L) * YEAR;
+		int[] mothers = new int[people];
+		int[] fathers = new int[people];
+		// last names, births and deaths of the previous generation, then the
+		// current one
+		String[] lastNames = new String[Math.min(people, 2 * width)];
+		long[] births = new long[lastNames.length];
+		long[] deaths = new long[lastNames.length];
+		// numbers of the previous generation, and where they start
+		int from = 0;
+		int to = 0;
+		int generation = 0;
+		int families = 0;
+		try (LogWriter writer = new LogWriter(file)) {
+			writer.header();
+			int person = 0;
+			// founders, in families of one to six
+			while (person < Math.min(width, people)) {
+				int size = Math.min(1 + random.nextInt(6), width - person);
+				String familyID = "F" + families++;
+				String lastName = LAST[random.nextInt(LAST.length)];
+				for (int i = 0; i < size; i++, person++) {
+					mothers[person] = fathers[person] = -1;
+					long birth = seconds(founded + random.nextLong(10 * YEAR));
+					long death = death(random, birth);
+					writer.write(familyID, Integer.toString(person), first(random, person), lastName, sex(person),
+							birth, death);
+					lastNames[person] = lastName;
+					births[person] = birth;
+					deaths[person] = death;
+				}
+			}
+			to = person;
+			while (person < people) {
+				// pair the women of the last generation, even numbers, with its men
+				// of the same rank by age, keeping the couples both alive for a year
+				// or more once the younger is 18
+				int base = from & 1;
+				int pairs = (to - from - base) / 2;
+				int[] women = byBirth(births, base, pairs);
+				int[] men = byBirth(births, base + 1, pairs);
+				int couples = 0;
+				for (int c = 0; c < pairs; c++) {
+					int woman = base + 2 * women[c];
+					int man = base + 2 * men[c] + 1;
+					if (Math.min(lived(deaths[woman]), lived(deaths[man])) - Math.max(births[woman], births[man])
+							> 19 * YEAR) {
+						women[couples] = woman;
+						men[couples++] = man;
+					}
+				}
+				if (couples == 0)
+					break;
+				generation++;
+				int[] order = shuffled(random, couples);
+				int born = 0;
+				int goal = Math.min(width, people - person);
+				for (int c = 0; born < goal; c = (c + 1) % couples) {
+					int mother = women[order[c]];
+					int father = men[order[c]];
+					int children = Math.min(children(random), goal - born);
+					if (children == 0)
+						continue;
+					String familyID = "F" + families++;
+					String lastName = lastNames[father];
+					long earliest = Math.max(births[mother], births[father]) + 18 * YEAR;
+					long latest = Math.min(earliest + 23 * YEAR,
+							Math.min(lived(deaths[mother]), lived(deaths[father])));
+					for (int i = 0; i < children; i++, person++, born++) {
+						mothers[person] = from + mother;
+						fathers[person] = from + father;
+						long birth = seconds(earliest + random.nextLong(latest - earliest));
+						long death = death(random, birth);
+						writer.write(familyID, Integer.toString(person), first(random, person), lastName,
+								sex(person), birth, death);
+						lastNames[to - from + born] = lastName;
+						births[to - from + born] = birth;
+						deaths[to - from + born] = death;
+					}
+				}
+				// the generation just written becomes the parents of the next
+				System.arraycopy(lastNames, to - from, lastNames, 0, born);
+				System.arraycopy(births, to - from, births, 0, born);
+				System.arraycopy(deaths, to - from, deaths, 0, born);
+				from = to;
+				to = person;
+			}
+			for (int child = 0; child < people; child++) {
+				if (mothers[child] >= 0)
+					writer.link(Integer.toString(child), Integer.toString(mothers[child]),
+							Integer.toString(fathers[child]));
+			}
+			writer.commit();
+		}
+		return generation + 1;
+	}
+
+	/**
+	 * @return the numbers below the count in random order
+	 */
+	private static int[] shuffled(Random random, int count) {
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++)
+			order[i] = i;
+		for (int i = count - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+		return order;
+	}
+
+	/**
+	 * @param births the births of a generation
+	 * @param first  where in {@code births} the first of every other person is
+	 * @param count  people taken
+	 * @return the numbers below the count, ordered by the birth of the person
+	 *         {@code first + 2 * number}
+	 */
+	private static int[] byBirth(long[] births, int first, int count) {
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++)
+			order[i] = i;
+		Arrays.sort(order, Comparator.comparingLong(i -> births[first + 2 * i]));
+		int[] sorted = new int[count];
+		for (int i = 0; i < count; i++)
+			sorted[i] = order[i];
+		return sorted;
+	}
+
+	/**
+	 * @return a number of children drawn from {@link #CHILDREN}
+	 */
+	private static int children(Random random) {
+		int roll = random.nextInt(100);
+		for (int children = 0; children < CHILDREN.length; children++) {
+			roll -= CHILDREN[children];
+			if (roll < 0)
+				return children;
+		}
+		return CHILDREN.length - 1;
+	}
+
+	/**
+	 * Women have even numbers and men odd, so every generation pairs up
+	 */
+	private static Sex sex(int person) {
+		return person % 2 == 0 ? Sex.FEMALE : Sex.MALE;
+	}
+
+	private static String first(Random random, int person) {
+		String[] names = person % 2 == 0 ? FEMALE : MALE;
+		return names[random.nextInt(names.length)];
+	}
+
+	/**
+	 * @return a death 30 to 100 years after birth, or {@link IsoInstant#NONE} if
+	 *         it is yet to come
+	 */
+	private static long death(Random random, long birth) {
+		long death = seconds(birth + (30 + random.nextInt(70)) * YEAR + random.nextLong(YEAR));
+		return death > NOW ? IsoInstant.NONE : death;
+	}
+
+	/**
+	 * @return the death, or the end of time for someone still alive
+	 */
+	private static long lived(long death) {
+		return death == IsoInstant.NONE ? Long.MAX_VALUE : death;
+	}
+
+	/**
+	 * @return the instant rounded down to whole seconds, as logs keep them
+	 */
+	private static long seconds(long millis) {
+		return Math.floorDiv(millis, 1000) * 1000;
+	}
+}
@@ -0,0 +1,90 @@
+package people;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+
+import people.Person.Sex;
+import saveIO.IsoInstant;
+
+/**
+ * Compares the heap retained by {@link ObjectPersonStore} and
+ * {@link ColumnarPersonStore} holding the same generated people. Names come
+ * from fixed pools but every person gets its own copies, as they do when read
+ * from a log.
+ *
+ * <pre>
+ * java -Xmx6g -cp bin people.PersonStoreFootprint 1000000 10000000
+ * </pre>
+ */
+public class PersonStoreFootprint {
+
+	private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+	public static void main(String[] args) {
+		if (args.length == 0)
+			args = new String[] { "1000000", "10000000" };
+		System.out.printf("%12s %10s %14s %14s%n", "people", "engine", "heap MB", "bytes/person");
+		for (String arg : args) {
+			int count = Integer.parseInt(arg);
+			for (boolean columnar : new boolean[] { false, true })
+				measure(count, columnar);
+		}
+	}
+
+	/**
+	 * Fills a store with the count of people and prints the heap it retains
+	 */
+	private static void measure(int count, boolean columnar) {
+		String engine = columnar ? "columnar" : "objects";
+		IdTable ids = new IdTable();
+		LinkGraph links = new LinkGraph(ids);
+		for (int i = 0; i < count; i++)
+			ids.intern(Integer.toString(i));
+		long before = used();
+		PersonStore store = columnar ? new ColumnarPersonStore(ids) : new ObjectPersonStore(links);
+		try {
+			fill(store, ids, count);
+		} catch (OutOfMemoryError e) {
+			System.out.printf("%12d %10s %14s%n", count, engine, "out of memory");
+			return;
+		}
+		long retained = used() - before;
+		System.out.printf("%12d %10s %14.1f %14.1f%n", count, engine, retained / 1048576.0,
+				(double) retained / store.size());
+	}
+
+	/**
+	 * Adds the count of people to the store, drawn from a seeded generator
+	 */
+	private static void fill(PersonStore store, IdTable ids, int count) {
+		Random random = new Random(42);
+		String[] firstNames = pool("First", 5_000);
+		String[] lastNames = pool("Last", 20_000);
+		Sex[] sexes = Sex.values();
+		long start = -2_000_000_000_000L;
+		for (int i = 0; i < count; i++) {
+			long birth = start + (random.nextLong() >>> 24);
+			long death = random.nextInt(3) == 0 ? birth + (random.nextLong() >>> 31) : IsoInstant.NONE;
+			store.add(i, ids.name(i), new String(firstNames[random.nextInt(firstNames.length)]),
+					new String(lastNames[random.nextInt(lastNames.length)]), sexes[random.nextInt(sexes.length)], birth,
+					death);
+		}
+	}
+
+	private static String[] pool(String prefix, int size) {
+		String[] names = new String[size];
+		for (int i = 0; i < size; i++)
+			names[i] = prefix + i;
+		return names;
+	}
+
+	/**
+	 * @return bytes of heap in use after collecting garbage
+	 */
+	private static long used() {
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return MEMORY.getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,100 @@
+package people;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that a family log survives being loaded from text, written as a
+ * snapshot, loaded from the snapshot and written as text again, on both
+ * engines: the two texts must be the same byte for byte. Then cuts the end
+ * off the snapshot and checks that loading falls back to the text, keeps
+ * nothing from the damaged snapshot and writes a good one in its place.
+ *
+ * <pre>
+ * java -cp bin people.SnapshotRoundTrip [log...]
+ * </pre>
+ *
+ * Without logs, one of 20000 people is generated.
+ */
+public class SnapshotRoundTrip {
+
+	private static final List<String> failures = new ArrayList<String>();
+
+	public static void main(String[] args) throws Exception {
+		File dir = Files.createTempDirectory("round-trip").toFile();
+		List<File> logs = new ArrayList<File>();
+		for (String arg : args)
+			logs.add(new File(arg));
+		if (logs.isEmpty()) {
+			File generated = new File(dir, "generated-log.txt");
+			GenealogyGenerator.generate(generated, 20_000, 42);
+			logs.add(generated);
+		}
+		for (File source : logs) {
+			for (boolean columnar : new boolean[] { false, true })
+				check(source, columnar, dir);
+		}
+		for (File file : dir.listFiles())
+			file.delete();
+		dir.delete();
+		for (String failure : failures)
+			System.out.println(failure);
+		System.out.println(failures.isEmpty() ? "OK" : failures.size() + " failures");
+		System.exit(failures.isEmpty() ? 0 : 1);
+	}
+
+	private static void check(File source, boolean columnar, File dir) throws IOException {
+		String name = source.getName() + (columnar ? " (columnar)" : "");
+		File log = new File(dir, "log.txt");
+		Files.copy(source.toPath(), log.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		File snapshot = new File(log.getPath() + ".snapshot");
+		snapshot.delete();
+
+		FamilyManager text = new FamilyManager(columnar);
+		text.read(log);
+		File fromText = new File(dir, "from-text.txt");
+		text.write(fromText);
+		text.writeSnapshot(log);
+
+		FamilyManager binary = new FamilyManager(columnar);
+		if (!binary.readSnapshot(log))
+			fail(name + ": snapshot not read back");
+		File fromSnapshot = new File(dir, "from-snapshot.txt");
+		binary.write(fromSnapshot);
+		same(name + ": text written from the snapshot", fromText, fromSnapshot);
+
+		try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+			file.setLength(file.length() - 20);
+		}
+		FamilyManager fallback = new FamilyManager(columnar);
+		fallback.load(log, false);
+		if (fallback.getPeopleCount() != text.getPeopleCount()
+				|| fallback.getFamilyCount() != text.getFamilyCount())
+			fail(name + ": " + fallback.getPeopleCount() + " people and " + fallback.getFamilyCount()
+					+ " families loaded past a damaged snapshot, not " + text.getPeopleCount() + " and "
+					+ text.getFamilyCount());
+		if (!fallback.getReadProblems().stream().anyMatch(problem -> problem.startsWith("Snapshot not used")))
+			fail(name + ": damaged snapshot not reported");
+		File fromFallback = new File(dir, "from-fallback.txt");
+		fallback.write(fromFallback);
+		same(name + ": text written after a damaged snapshot", fromText, fromFallback);
+		if (!new FamilyManager(columnar).readSnapshot(log))
+			fail(name + ": damaged snapshot not replaced");
+		System.out.printf("%s: %d people, %d families%n", name, text.getPeopleCount(), text.getFamilyCount());
+	}
+
+	private static void same(String what, File expected, File actual) throws IOException {
+		long mismatch = Files.mismatch(expected.toPath(), actual.toPath());
+		if (mismatch >= 0)
+			fail(what + " differs from the text read at byte " + mismatch);
+	}
+
+	private static void fail(String message) {
+		failures.add(message);
+	}
+}
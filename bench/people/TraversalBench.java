@@ -0,0 +1,69 @@
+package people;
+
+import java.util.Random;
+
+import people.Person.Sex;
+
+/**
+ * Times ancestor and descendant walks over a generated family tree of a
+ * million people across more than 50 generations. Every person past the first
+ * generation has a random mother and father from the one before, so ancestry
+ * collapses onto shared forebears the way real pedigrees do.
+ *
+ * <pre>
+ * java -Xmx2g -cp bin people.TraversalBench [people] [generations] [--columnar]
+ * </pre>
+ */
+public class TraversalBench {
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int generations = args.length > 1 ? Integer.parseInt(args[1]) : 51;
+		boolean columnar = args.length > 2 && args[2].equals("--columnar");
+		int width = count / generations;
+
+		long start = System.nanoTime();
+		FamilyManager manager = new FamilyManager(columnar);
+		Random random = new Random(42);
+		String[] ids = new String[width * generations];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = manager.addPerson("First" + random.nextInt(5_000), "Last" + random.nextInt(20_000), null, null,
+					i % 2 == 0 ? Sex.FEMALE : Sex.MALE);
+			int generation = i / width;
+			if (generation > 0) {
+				int parents = (generation - 1) * width;
+				String mother = ids[parents + 2 * random.nextInt(width / 2)];
+				String father = ids[parents + 2 * random.nextInt(width / 2) + 1];
+				manager.addChild(mother, father, ids[i]);
+			}
+		}
+		System.out.printf("built %d people in %d generations of %d: %d ms%n", ids.length, generations, width,
+				(System.nanoTime() - start) / 1_000_000);
+
+		int[] visits = new int[1];
+		TreeVisitor counter = (generation, personID, person) -> {
+			visits[0]++;
+			return true;
+		};
+		for (int round = 0; round < 5; round++) {
+			visits[0] = 0;
+			start = System.nanoTime();
+			int walks = 0;
+			for (int i = 0; i < 20; i++) {
+				manager.visitAncestors(ids[ids.length - 1 - random.nextInt(width)], Integer.MAX_VALUE, counter);
+				manager.visitDescendants(ids[random.nextInt(width)], Integer.MAX_VALUE, counter);
+				walks += 2;
+			}
+			long nanos = System.nanoTime() - start;
+			System.out.printf("round %d: %d walks, %d people visited, %d ms, %.1f ns/visit%n", round, walks,
+					visits[0], nanos / 1_000_000, (double) nanos / visits[0]);
+		}
+
+		String leaf = ids[ids.length - 1];
+		for (int depth : new int[] { 1, 5, 10, 50 }) {
+			visits[0] = 0;
+			manager.visitAncestors(leaf, depth, counter);
+			System.out.printf("ancestors within %d generations: %d%n", depth, visits[0]);
+		}
+	}
+}
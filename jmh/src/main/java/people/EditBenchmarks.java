@@ -0,0 +1,82 @@
+package people;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import people.Person.Sex;
+
+/**
+ * Time of the edits, each on its own manager read in the trial's setup. Each
+ * iteration is one invocation of {@link LoadedLog#OPS} edits, on people added
+ * before it, so a trial makes the same edits however fast they run, and no
+ * other benchmark sees them. Run with {@code -prof gc} to see the bytes
+ * allocated per operation as well:
+ *
+ * <pre>
+ * java -jar jmh/target/benchmarks.jar EditBenchmarks -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = "-Xmx8g")
+public class EditBenchmarks {
+
+	/**
+	 * People added before each iteration, for it to link as children of the
+	 * oldest and youngest
+	 */
+	@State(Scope.Benchmark)
+	public static class Linking extends LoadedLog {
+
+		String[] children = new String[OPS];
+
+		@Setup(Level.Iteration)
+		public void addChildren() throws Exception {
+			for (int i = 0; i < OPS; i++)
+				children[i] = manager.addPerson("Child", "Bench", null, null, Sex.OTHER);
+		}
+	}
+
+	/**
+	 * People added before each iteration, for it to remove
+	 */
+	@State(Scope.Benchmark)
+	public static class Removing extends LoadedLog {
+
+		String[] added = new String[OPS];
+
+		@Setup(Level.Iteration)
+		public void addPeople() throws Exception {
+			for (int i = 0; i < OPS; i++)
+				added[i] = manager.addPerson("Removed", "Bench", null, null, Sex.OTHER);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LoadedLog.OPS)
+	public void addChild(Linking state) throws Exception {
+		for (int i = 0; i < LoadedLog.OPS; i++)
+			state.manager.addChild(state.old[i], state.young[i], state.children[i]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LoadedLog.OPS)
+	public void removePerson(Removing state) throws Exception {
+		for (String id : state.added)
+			state.manager.removePerson(id);
+	}
+}
@@ -0,0 +1,108 @@
+package people;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A log written by {@link GenealogyGenerator} and a manager read from it, made
+ * once per trial. JMH runs each benchmark in its own fork with its own state,
+ * so every benchmark starts from the same tree, whichever ran before it. Also
+ * picks the IDs looked up and walked from, the same for the same seed.
+ * <p>
+ * Parameters are set with {@code -p}, as in {@code -p size=10000000 -p
+ * columnar=true}; logs of ten million people need {@code -jvmArgsAppend
+ * -Xmx16g} or so.
+ */
+@State(Scope.Benchmark)
+public class LoadedLog {
+
+	/**
+	 * Lookups, links and walks in each invocation
+	 */
+	static final int OPS = 10_000;
+
+	/**
+	 * People in the log
+	 */
+	@Param({ "1000", "100000", "1000000" })
+	public int size;
+
+	/**
+	 * True to keep people in columns, see {@link ColumnarPersonStore}
+	 */
+	@Param({ "false" })
+	public boolean columnar;
+
+	/**
+	 * True to turn on the manager's {@link Metrics}, to measure what recording
+	 * costs
+	 */
+	@Param({ "false" })
+	public boolean record;
+
+	@Param({ "42" })
+	public long seed;
+
+	File log;
+
+	/**
+	 * Where {@link ReadBenchmarks#write(LoadedLog)} writes the log back
+	 */
+	File copy;
+
+	FamilyManager manager;
+
+	/**
+	 * IDs looked up, one in ten held by no one
+	 */
+	String[] ids = new String[OPS];
+	String[] familyIDs = new String[OPS];
+
+	/**
+	 * The youngest, who have the most ancestors, and the oldest, who have the
+	 * most descendants
+	 */
+	String[] young = new String[OPS];
+	String[] old = new String[OPS];
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		log = File.createTempFile("loadedlog", ".txt");
+		copy = File.createTempFile("loadedlog-write", ".txt");
+		GenealogyGenerator.generate(log, size, seed);
+		manager = read();
+		Random random = new Random(seed);
+		for (int i = 0; i < OPS; i++) {
+			ids[i] = Integer.toString(random.nextInt(size + size / 9 + 1));
+			familyIDs[i] = "F" + random.nextInt(size / 2 + 1);
+		}
+		for (int i = 0; i < OPS; i++) {
+			young[i] = Integer.toString(size - 1 - random.nextInt(Math.max(1, size / 10)));
+			old[i] = Integer.toString(random.nextInt(Math.max(1, size / 10)));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() {
+		log.delete();
+		copy.delete();
+	}
+
+	/**
+	 * @return a new manager read from the log
+	 */
+	FamilyManager read() throws IOException {
+		FamilyManager read = new FamilyManager(columnar);
+		read.setRecording(record);
+		read.read(log);
+		return read;
+	}
+}
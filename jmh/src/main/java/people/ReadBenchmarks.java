@@ -0,0 +1,106 @@
+package people;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of everything that leaves the manager as it was: reading and
+ * writing the log, looking up people and families, rendering everything with
+ * {@code toString}, walking ancestors and descendants, finding duplicate
+ * records and validating the whole tree. Run with {@code -prof gc} to see the
+ * bytes allocated per operation as well:
+ *
+ * <pre>
+ * java -jar jmh/target/benchmarks.jar ReadBenchmarks -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx8g")
+public class ReadBenchmarks {
+
+	/**
+	 * Generations each walk covers
+	 */
+	private static final int DEPTH = 10;
+
+	@Benchmark
+	public FamilyManager read(LoadedLog log) throws IOException {
+		return log.read();
+	}
+
+	@Benchmark
+	public void write(LoadedLog log) throws IOException {
+		log.manager.write(log.copy);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LoadedLog.OPS)
+	public void hasPerson(LoadedLog log, Blackhole hole) {
+		for (String id : log.ids)
+			hole.consume(log.manager.hasPerson(id));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LoadedLog.OPS)
+	public void hasFamily(LoadedLog log, Blackhole hole) {
+		for (String id : log.familyIDs)
+			hole.consume(log.manager.hasFamily(id));
+	}
+
+	/**
+	 * {@link FamilyManager#toString()}
+	 */
+	@Benchmark
+	public String render(LoadedLog log) {
+		return log.manager.toString();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LoadedLog.OPS)
+	public void visitAncestors(LoadedLog log, Blackhole hole) throws Exception {
+		TreeVisitor visitor = visitor(hole);
+		for (String id : log.young)
+			hole.consume(log.manager.visitAncestors(id, DEPTH, visitor));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LoadedLog.OPS / 10)
+	public void visitDescendants(LoadedLog log, Blackhole hole) throws Exception {
+		TreeVisitor visitor = visitor(hole);
+		for (int i = 0; i < LoadedLog.OPS / 10; i++)
+			hole.consume(log.manager.visitDescendants(log.old[i], DEPTH, visitor));
+	}
+
+	@Benchmark
+	public int findDuplicates(LoadedLog log) {
+		return log.manager.findDuplicates(FamilyManager.LIKELY_DUPLICATE, Integer.MAX_VALUE).size();
+	}
+
+	@Benchmark
+	public int validate(LoadedLog log, Blackhole hole) {
+		return log.manager.validate(hole::consume);
+	}
+
+	/**
+	 * @return a visitor that hands every relative to the blackhole
+	 */
+	private static TreeVisitor visitor(Blackhole hole) {
+		return (generation, personID, person) -> {
+			hole.consume(person);
+			return true;
+		};
+	}
+}
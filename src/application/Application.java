@@ -1,20 +1,39 @@
 package application;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
-import java.time.Instant;
-import java.time.format.DateTimeParseException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.InputMismatchException;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 
+import javax.management.JMException;
+
 import people.FamilyManager;
+import people.Person;
 import people.Person.Sex;
+import saveIO.IsoInstant;
 
 public class Application {
 
+	/**
+	 * Most people a name search prints
+	 */
+	private static final int SEARCH_RESULTS = 20;
+
+	/**
+	 * Milliseconds into the day, in UTC, given to dates entered without a time
+	 */
+	static final long DATE_TIME = 10 * 3_600_000L;
+
 	/**
 	 * This {@code Application}'s Scanner
 	 */
@@ -36,24 +55,82 @@ public class Application {
 	 * @param out output of application
 	 */
 	public Application(InputStream in, PrintStream out) {
+		this(in, out, false);
+	}
+
+	/**
+	 * Defines the Application
+	 * @param in input of application
+	 * @param out output of application
+	 * @param columnar true to keep people in columns, for very large logs
+	 */
+	public Application(InputStream in, PrintStream out, boolean columnar) {
+		this(in, out, new FamilyManager(columnar));
+	}
+
+	/**
+	 * Defines an Application working on a manager it shares with others
+	 * @param in input of application
+	 * @param out output of application
+	 * @param manager the manager to work on
+	 * @see Server
+	 */
+	public Application(InputStream in, PrintStream out, FamilyManager manager) {
 		sc = new Scanner(in);
 		this.out = out;
-		manager = new FamilyManager();
+		this.manager = manager;
 	}
 
 	/**
 	 * Starts the {@code Application}
 	 */
 	public void start(File file) {
+		start(file, false);
+	}
+
+	/**
+	 * Starts the {@code Application}
+	 * @param file the family log to load and save
+	 * @param parallel true to load the log on every core
+	 */
+	public void start(File file, boolean parallel) {
 		try {
-			manager.read(file);
-		} catch (FileNotFoundException e) {
+			manager.load(file, parallel);
+		} catch (IOException e) {
 			out.println("Tried to read file, but failed");
-		} catch (DateTimeParseException e) {
-			out.println("Cannot read file dates");
-		} catch (ArrayIndexOutOfBoundsException e) {
-			out.println("Invalid length of file data");
 		}
+		try {
+			manager.openJournal(file);
+		} catch (IOException e) {
+			out.println("Cannot open journal, edits will not be saved: " + e.getMessage());
+		}
+		for (String problem : manager.getReadProblems())
+			out.println("Problem in file: " + problem);
+		run(true);
+		try {
+			manager.closeJournal();
+		} catch (IOException e) {
+			out.println("Cannot write to file: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Runs the menu on a manager whose owner loads and saves it, until the user
+	 * exits or the input ends
+	 */
+	public void session() {
+		try {
+			run(false);
+		} catch (NoSuchElementException e) {
+			// the input ended
+		}
+	}
+
+	/**
+	 * Runs the menu until the user exits
+	 * @param save true to make the edits of each menu action durable
+	 */
+	private void run(boolean save) {
 		int result = 0;
 		do {
 			result = menu();
@@ -73,20 +150,84 @@ public class Application {
 			case 5:
 				viewAll();
 				break;
+			case 6:
+				searchNames();
+				break;
 			}
+			if (save)
+				save();
 		} while (result != 0);
+	}
+
+	/**
+	 * Makes the edits of the last menu action durable
+	 */
+	private void save() {
 		try {
-			manager.write(file);
-		} catch (FileNotFoundException e) {
-			out.println("Cannot find file to write to");
+			manager.commit();
+		} catch (IOException e) {
+			out.println("Cannot save edits: " + e.getMessage());
 		}
 	}
 
 	/**
-	 * View all families and people.
+	 * View all families and people, a page at a time if asked
 	 */
 	private void viewAll() {
-		out.print(manager);
+		int page = getPageSize();
+		out.println("Family\n");
+		try {
+			long cursor = FamilyManager.FIRST;
+			do {
+				cursor = manager.render(out, cursor, page == 0 ? Integer.MAX_VALUE : page);
+			} while (cursor != FamilyManager.END && showMore());
+		} catch (IOException e) {
+			out.println("Cannot show records: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Gets how many records to show at once from the user
+	 * @return the count, or 0 for all of them
+	 */
+	private int getPageSize() {
+		while (true) {
+			out.print("Records per page (0 for all):");
+			try {
+				int input = sc.nextInt();
+				if (input < 0) {
+					out.println("Enter a number of 0 or more.");
+					continue;
+				}
+				return input;
+			} catch (InputMismatchException e) {
+				sc.next();
+				out.println("Enter a number value.");
+			}
+		}
+	}
+
+	/**
+	 * @return true if the user wants the next page
+	 */
+	private boolean showMore() {
+		out.print("Show more? (y/n):");
+		return sc.next().equalsIgnoreCase("y");
+	}
+
+	/**
+	 * Searches for people by a first or last name, allowing for misspellings
+	 */
+	private void searchNames() {
+		out.print("\nEnter Name:");
+		String name = sc.next();
+		List<Person> found = manager.searchName(name, SEARCH_RESULTS);
+		if (found.isEmpty()) {
+			out.println("No matches");
+			return;
+		}
+		for (Person person : found)
+			out.println(person.getId() + ": " + person.getFirstName() + " " + person.getLastName());
 	}
 
 	/**
@@ -132,17 +273,75 @@ public class Application {
 	}
 
 	/**
-	 * Prints the tree of Family ID
+	 * Prints the tree of Family ID, then the ancestors and descendants of a
+	 * person in it
 	 * @param iD the family id to print
 	 */
 	private void viewTree(String iD) {
 		try {
 			out.println(manager.printFamily(iD));
+			out.print("\nEnter ID of Person:");
+			String ID = sc.next();
+			if (!manager.hasPerson(ID)) {
+				out.println("ID Invalid");
+				return;
+			}
+			int generations = getGenerations();
+			// printed once the walks are done, so a slow client holds up no walk
+			List<String> ancestors = new ArrayList<String>();
+			manager.visitAncestors(ID, generations, (generation, personID, person) -> ancestors
+					.add(relative(generation, personID, person)));
+			List<String> descendants = new ArrayList<String>();
+			manager.visitDescendants(ID, generations, (generation, personID, person) -> descendants
+					.add(relative(generation, personID, person)));
+			printRelatives("Ancestors:", ancestors);
+			printRelatives("Descendants:", descendants);
 		} catch (Exception e) {
 			out.print(e.getMessage());
 		}
 		
 	}
+
+	/**
+	 * @return a line naming the relative, indented by generation
+	 */
+	private static String relative(int generation, String personID, Person person) {
+		if (person == null)
+			return "\t".repeat(generation) + personID + " (not recorded)";
+		return "\t".repeat(generation) + personID + ": " + person.getFirstName() + " " + person.getLastName();
+	}
+
+	/**
+	 * Prints the heading and the relatives under it
+	 */
+	private void printRelatives(String heading, List<String> relatives) {
+		out.println(heading);
+		if (relatives.isEmpty())
+			out.println("\tNone recorded");
+		for (String relative : relatives)
+			out.println(relative);
+	}
+
+	/**
+	 * Gets how many generations to show from user
+	 * @return the number of generations, at least 1
+	 */
+	private int getGenerations() {
+		while (true) {
+			out.print("Generations to show:");
+			try {
+				int input = sc.nextInt();
+				if (input < 1) {
+					out.println("Enter a number above 0.");
+					continue;
+				}
+				return input;
+			} catch (InputMismatchException e) {
+				sc.next();
+				out.println("Enter a number value.");
+			}
+		}
+	}
 	
 	/**
 	 * Gets a yes or no
@@ -298,17 +497,24 @@ public class Application {
 	 * @return Date value from user
 	 */
 	private Date getDate(String string) {
-		Date date = null;
-
 		out.print(string + " (YYYY-MM-DD):");
 
-		String input = sc.next();
-		try {
-			date = Date.from(Instant.parse(input + "T10:00:00.00Z"));
-		} catch (DateTimeParseException e) {
+		long date = day(sc.next());
+		if (date == IsoInstant.INVALID) {
 			out.println("Invalid Date. No date recorded.");
+			return null;
 		}
-		return date;
+		return new Date(date);
+	}
+
+	/**
+	 * Parses a date entered as {@code YYYY-MM-DD}
+	 * @return epoch milliseconds of {@link #DATE_TIME} on the date, or
+	 *         {@link IsoInstant#INVALID}
+	 */
+	static long day(String text) {
+		long day = IsoInstant.parseDate(text);
+		return day == IsoInstant.INVALID ? day : day * 86_400_000L + DATE_TIME;
 	}
 
 	/**
@@ -328,8 +534,8 @@ public class Application {
 				}
 				return input;
 			} catch (InputMismatchException e) {
+				sc.next();
 				out.println("Enter a number value.");
-				continue;
 			}
 		}
 	}
@@ -371,35 +577,146 @@ public class Application {
 	 * 3. edit family <br/>
 	 * 4. view family <br/>
 	 * 5. view all <br/>
+	 * 6. search names <br/>
 	 * 0. exit <br/>
 	 * @return returns the option value the user selected
 	 */
 	private int menu() {
 		while (true) {
 			out.print("\n-=====MENU====--\nEnter 0 to exit\n" + "\n\t1. Add Family\n" + "\t2. Remove Family\n" + "\t3. Edit Family\n"
-					+ "\t4. View Family\n" + "\t5. View all\n" + "\nNumber Selection: ");
+					+ "\t4. View Family\n" + "\t5. View all\n" + "\t6. Search Names\n" + "\nNumber Selection: ");
 			try {
 				int input = sc.nextInt();
-				if (input > 5 || input < 0) {
-					out.println("Enter a number between 0-5.");
+				if (input > 6 || input < 0) {
+					out.println("Enter a number between 0-6.");
 					continue;
 				}
 				return input;
 			} catch (InputMismatchException e) {
+				sc.next();
 				out.println("Enter a number value.");
-				continue;
 			}
 		}
 	}
 
 	/**
 	 * Main.
-	 * @param args
+	 * @param args {@code --parallel} to load the log on every core,
+	 *             {@code --columnar} to keep people in columns,
+	 *             {@code --serve} or {@code --serve=<port>} to serve sessions
+	 *             over TCP instead of running one on the console,
+	 *             {@code --batch} or {@code --batch=<script>} to run a
+	 *             {@link Batch} script from the console or a file,
+	 *             {@code --metrics} to time every operation and publish the
+	 *             timings over JMX, or {@code --metrics=<seconds>} to also
+	 *             print them to the error stream that often
 	 */
 	public static void main(String[] args) {
 		File file = new File("family-log.txt");
-		Application app = new Application(System.in, System.out);
-		app.start(file);
+		boolean parallel = false;
+		boolean columnar = false;
+		int port = -1;
+		String script = null;
+		long metrics = -1;
+		for (String arg : args) {
+			if (arg.equals("--parallel"))
+				parallel = true;
+			else if (arg.equals("--columnar"))
+				columnar = true;
+			else if (arg.equals("--serve"))
+				port = Server.DEFAULT_PORT;
+			else if (arg.startsWith("--serve="))
+				port = Integer.parseInt(arg.substring("--serve=".length()));
+			else if (arg.equals("--batch"))
+				script = "";
+			else if (arg.startsWith("--batch="))
+				script = arg.substring("--batch=".length());
+			else if (arg.equals("--metrics"))
+				metrics = 0;
+			else if (arg.startsWith("--metrics="))
+				metrics = Long.parseLong(arg.substring("--metrics=".length()));
+		}
+		FamilyManager manager = new FamilyManager(columnar);
+		if (metrics >= 0) {
+			manager.setRecording(true);
+			try {
+				manager.registerMBean(file.getName());
+			} catch (JMException e) {
+				System.out.println("Cannot publish metrics: " + e.getMessage());
+			}
+			if (metrics > 0)
+				manager.logMetrics(System.err, metrics * 1000);
+		}
+		if (script != null) {
+			batch(manager, file, parallel, script);
+			return;
+		}
+		if (port >= 0) {
+			serve(manager, file, parallel, port);
+			return;
+		}
+		Application app = new Application(System.in, System.out, manager);
+		app.start(file, parallel);
+	}
+
+	/**
+	 * Loads the family log and serves sessions on it until the process is
+	 * stopped, then saves every edit
+	 * @param port the port to serve on
+	 */
+	private static void serve(FamilyManager manager, File file, boolean parallel, int port) {
+		try {
+			manager.load(file, parallel);
+			manager.openJournal(file);
+		} catch (IOException e) {
+			System.out.println("Cannot load " + file + ": " + e.getMessage());
+			return;
+		}
+		for (String problem : manager.getReadProblems())
+			System.out.println("Problem in file: " + problem);
+		Server server;
+		try {
+			server = new Server(manager, port, System.out);
+		} catch (IOException e) {
+			System.out.println("Cannot serve on port " + port + ": " + e.getMessage());
+			return;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				server.close();
+				manager.closeJournal();
+			} catch (IOException e) {
+				System.out.println("Cannot write to file: " + e.getMessage());
+			}
+		}));
+		server.run();
+	}
+
+	/**
+	 * Loads the family log, runs a script on it and saves its edits
+	 * @param script the script file, or empty to read the console
+	 */
+	private static void batch(FamilyManager manager, File file, boolean parallel, String script) {
+		try {
+			manager.load(file, parallel);
+			manager.openJournal(file);
+		} catch (IOException e) {
+			System.out.println("Cannot load " + file + ": " + e.getMessage());
+			return;
+		}
+		for (String problem : manager.getReadProblems())
+			System.out.println("Problem in file: " + problem);
+		try (Reader in = script.isEmpty() ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+				: new InputStreamReader(new FileInputStream(script), StandardCharsets.UTF_8)) {
+			new Batch(manager, System.out).run(in);
+		} catch (IOException e) {
+			System.out.println("Cannot read script: " + e.getMessage());
+		}
+		try {
+			manager.closeJournal();
+		} catch (IOException e) {
+			System.out.println("Cannot write to file: " + e.getMessage());
+		}
 	}
 
 }
@@ -0,0 +1,458 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import people.FamilyManager;
+import people.Person;
+import people.Person.Sex;
+import people.Relationship;
+import saveIO.IsoInstant;
+
+/**
+ * Runs a script of commands against a {@link FamilyManager} without prompts.
+ * Each line holds one comma separated command; blank lines and lines starting
+ * with {@code #} are skipped:
+ *
+ * <pre>
+ * add-family,familyID
+ * remove-family,familyID
+ * add-person,familyID,firstName,lastName,birth,death,sex[,label]
+ * add-to,familyID,personID
+ * add-child,motherID,fatherID,childID
+ * edit,personID,firstName,lastName,birth,death,sex
+ * remove,personID
+ * query,first-name|last-name|search|families,name
+ * query,born|died,from,to
+ * query,alive,date
+ * query,relate,personID,relativeID
+ * query,duplicates,limit
+ * validate
+ * </pre>
+ *
+ * Dates are {@code YYYY-MM-DD} or full instants, and may be left empty. Empty
+ * fields of an {@code edit} are left unchanged. A person added with a label
+ * can be named as {@code $label} by later commands, since their ID is only
+ * known once they are added. {@code validate} checks the whole tree, as after
+ * an import, printing each violation as it is found and then their count.
+ * <p>
+ * The whole script is checked before anything is run, and nothing is run if a
+ * line is malformed. Commands then run in one
+ * {@link FamilyManager#batch(Runnable) batch}; a command the manager refuses is
+ * reported and skipped. A summary is printed at the end.
+ */
+public class Batch {
+
+	/**
+	 * Commands a script may hold
+	 */
+	private static enum Verb {
+		ADD_FAMILY("add-family", 1, 1),
+		REMOVE_FAMILY("remove-family", 1, 1),
+		ADD_PERSON("add-person", 6, 7),
+		ADD_TO("add-to", 2, 2),
+		ADD_CHILD("add-child", 3, 3),
+		EDIT("edit", 6, 6),
+		REMOVE("remove", 1, 1),
+		QUERY("query", 2, 3),
+		VALIDATE("validate", 0, 0);
+
+		/**
+		 * The command as written in a script
+		 */
+		private final String name;
+
+		/**
+		 * Fields the command takes after its name
+		 */
+		private final int min;
+		private final int max;
+
+		private Verb(String name, int min, int max) {
+			this.name = name;
+			this.min = min;
+			this.max = max;
+		}
+
+		/**
+		 * @return the verb written as the name, or null
+		 */
+		private static Verb of(String name) {
+			for (Verb verb : values()) {
+				if (verb.name.equals(name))
+					return verb;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A checked line of a script
+	 */
+	private static class Command {
+
+		private final long line;
+		private final Verb verb;
+
+		/**
+		 * Fields after the verb
+		 */
+		private final String[] fields;
+
+		/**
+		 * Dates of {@code add-person} and {@code edit}, null if empty
+		 */
+		private Date birth;
+		private Date death;
+		private Sex sex;
+
+		private Command(long line, Verb verb, String[] fields) {
+			this.line = line;
+			this.verb = verb;
+			this.fields = fields;
+		}
+	}
+
+	private final FamilyManager manager;
+
+	/**
+	 * Where query results, refusals and the summary are printed
+	 */
+	private final PrintStream out;
+
+	/**
+	 * ID of each labelled person
+	 */
+	private final Map<String, String> labels = new HashMap<String, String>();
+
+	/**
+	 * Commands run without refusal, by verb
+	 */
+	private final Map<Verb, Integer> applied = new EnumMap<Verb, Integer>(Verb.class);
+
+	private int refused;
+
+	/**
+	 * Defines a batch
+	 * @param manager the manager to run commands against
+	 * @param out where results and the summary are printed
+	 */
+	public Batch(FamilyManager manager, PrintStream out) {
+		this.manager = manager;
+		this.out = out;
+	}
+
+	/**
+	 * Checks, then runs, every command of the script
+	 * @param script the script to read
+	 * @return false if the script was malformed and nothing was run
+	 * @throws IOException if the script cannot be read
+	 */
+	public boolean run(Reader script) throws IOException {
+		long start = System.nanoTime();
+		List<String> problems = new ArrayList<String>();
+		List<Command> commands = parse(script, problems);
+		if (!problems.isEmpty()) {
+			for (String problem : problems)
+				out.println(problem);
+			out.println("Script not run: " + problems.size() + " malformed lines");
+			return false;
+		}
+		manager.batch(() -> {
+			for (Command command : commands)
+				apply(command);
+		});
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		int total = 0;
+		StringBuilder counts = new StringBuilder();
+		for (Map.Entry<Verb, Integer> entry : applied.entrySet()) {
+			total += entry.getValue();
+			counts.append(counts.length() == 0 ? "" : ", ").append(entry.getKey().name).append(' ')
+					.append(entry.getValue());
+		}
+		out.println("Ran " + commands.size() + " commands in " + millis + " ms: " + total + " applied, " + refused
+				+ " refused" + (counts.length() == 0 ? "" : " (" + counts + ")"));
+		return true;
+	}
+
+	/**
+	 * Reads and checks every line of the script
+	 * @param problems receives a description of each malformed line
+	 * @return the commands of the script, in order
+	 */
+	private List<Command> parse(Reader script, List<String> problems) throws IOException {
+		List<Command> commands = new ArrayList<Command>();
+		Set<String> labelled = new HashSet<String>();
+		BufferedReader reader = script instanceof BufferedReader ? (BufferedReader) script
+				: new BufferedReader(script, 1 << 16);
+		long line = 0;
+		for (String text = reader.readLine(); text != null; text = reader.readLine()) {
+			line++;
+			if (text.isBlank() || text.startsWith("#"))
+				continue;
+			String[] parts = text.split(",", -1);
+			Verb verb = Verb.of(parts[0].strip());
+			String problem;
+			Command command = null;
+			if (verb == null) {
+				problem = "unknown command " + parts[0];
+			} else if (parts.length - 1 < verb.min || parts.length - 1 > verb.max) {
+				problem = verb.name + " takes " + (verb.min == verb.max ? verb.min : verb.min + " to " + verb.max)
+						+ " fields";
+			} else {
+				String[] fields = new String[parts.length - 1];
+				for (int i = 0; i < fields.length; i++)
+					fields[i] = parts[i + 1].strip();
+				command = new Command(line, verb, fields);
+				problem = check(command, labelled);
+			}
+			if (problem != null)
+				problems.add("Line " + line + ": " + problem);
+			else
+				commands.add(command);
+		}
+		return commands;
+	}
+
+	/**
+	 * Checks the fields of a command and works out its dates and sex
+	 * @param labelled labels given by earlier commands
+	 * @return what is wrong with the command, or null
+	 */
+	private static String check(Command command, Set<String> labelled) {
+		String[] fields = command.fields;
+		switch (command.verb) {
+		case ADD_PERSON:
+		case EDIT:
+			try {
+				command.birth = date(fields[3]);
+				command.death = date(fields[4]);
+			} catch (IllegalArgumentException e) {
+				return e.getMessage();
+			}
+			command.sex = sex(fields[5]);
+			if (command.sex == null && (command.verb == Verb.ADD_PERSON || !fields[5].isEmpty()))
+				return "unknown sex " + fields[5];
+			if (command.verb == Verb.ADD_PERSON) {
+				if (fields[1].isEmpty())
+					return "first name missing";
+				if (fields.length > 6 && !labelled.add(fields[6]))
+					return "label " + fields[6] + " given twice";
+				return reference(fields[0], labelled);
+			}
+			return reference(fields[0], labelled);
+		case ADD_TO:
+			return reference(fields[1], labelled);
+		case ADD_CHILD:
+			for (String field : fields) {
+				String problem = reference(field, labelled);
+				if (problem != null)
+					return problem;
+			}
+			return null;
+		case REMOVE:
+			return reference(fields[0], labelled);
+		case QUERY:
+			switch (fields[0]) {
+			case "first-name":
+			case "last-name":
+			case "search":
+			case "families":
+			case "alive":
+			case "duplicates":
+				if (fields.length != 2)
+					return "query " + fields[0] + " takes 1 field";
+				break;
+			case "born":
+			case "died":
+			case "relate":
+				if (fields.length != 3)
+					return "query " + fields[0] + " takes 2 fields";
+				break;
+			default:
+				return "unknown query " + fields[0];
+			}
+			try {
+				if (fields[0].equals("alive") || fields[0].equals("born") || fields[0].equals("died")) {
+					for (int i = 1; i < fields.length; i++) {
+						if (date(fields[i]) == null)
+							return "query " + fields[0] + " needs dates";
+					}
+				}
+			} catch (IllegalArgumentException e) {
+				return e.getMessage();
+			}
+			if (fields[0].equals("duplicates") && !fields[1].matches("[1-9][0-9]{0,8}"))
+				return "query duplicates needs a positive limit";
+			if (fields[0].equals("relate") || fields[0].equals("families")) {
+				for (int i = 1; i < fields.length; i++) {
+					String problem = reference(fields[i], labelled);
+					if (problem != null)
+						return problem;
+				}
+			}
+			return null;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @return a problem if the field names a label not given yet, otherwise null
+	 */
+	private static String reference(String field, Set<String> labelled) {
+		if (field.startsWith("$") && !labelled.contains(field.substring(1)))
+			return "label " + field.substring(1) + " not given by an earlier add-person";
+		return null;
+	}
+
+	/**
+	 * Runs a command, reporting it if the manager refuses it
+	 */
+	private void apply(Command command) {
+		String[] fields = command.fields;
+		try {
+			switch (command.verb) {
+			case ADD_FAMILY:
+				manager.createNewFamily(fields[0]);
+				break;
+			case REMOVE_FAMILY:
+				manager.removeFamily(fields[0]);
+				break;
+			case ADD_PERSON:
+				// checked first, so a refused command leaves no one behind
+				String familyID = id(fields[0]);
+				if (!manager.hasFamily(familyID))
+					throw new Exception("Family under ID: " + familyID + " does not exist.");
+				String id = manager.addPerson(fields[1], fields[2].isEmpty() ? null : fields[2], command.birth,
+						command.death, command.sex);
+				if (fields.length > 6)
+					labels.put(fields[6], id);
+				manager.addPersonTo(familyID, id);
+				break;
+			case ADD_TO:
+				manager.addPersonTo(fields[0], id(fields[1]));
+				break;
+			case ADD_CHILD:
+				manager.addChild(id(fields[0]), id(fields[1]), id(fields[2]));
+				break;
+			case EDIT:
+				manager.editPerson(id(fields[0]), empty(fields[1]), empty(fields[2]), command.birth, command.death,
+						command.sex);
+				break;
+			case REMOVE:
+				manager.removePerson(id(fields[0]));
+				break;
+			case QUERY:
+				query(command);
+				break;
+			case VALIDATE:
+				int found = manager.validate(violation -> out.println("\t" + violation));
+				out.println("Line " + command.line + ": validate: " + found + " violations");
+				break;
+			}
+			applied.merge(command.verb, 1, Integer::sum);
+		} catch (Exception e) {
+			refused++;
+			out.println("Line " + command.line + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Prints the results of a query, each on its own indented line
+	 */
+	private void query(Command command) throws Exception {
+		String[] fields = command.fields;
+		List<?> found;
+		switch (fields[0]) {
+		case "first-name":
+			found = manager.findByFirstName(fields[1]);
+			break;
+		case "last-name":
+			found = manager.findByLastName(fields[1]);
+			break;
+		case "search":
+			found = manager.searchName(fields[1], Integer.MAX_VALUE);
+			break;
+		case "families":
+			found = manager.getFamiliesOf(id(fields[1]));
+			break;
+		case "born":
+			found = manager.findBornBetween(date(fields[1]), date(fields[2]));
+			break;
+		case "died":
+			found = manager.findDiedBetween(date(fields[1]), date(fields[2]));
+			break;
+		case "alive":
+			found = manager.findAliveOn(date(fields[1]));
+			break;
+		case "duplicates":
+			found = manager.findDuplicates(FamilyManager.LIKELY_DUPLICATE, Integer.parseInt(fields[1]));
+			break;
+		default:
+			Relationship relationship = manager.relate(id(fields[1]), id(fields[2]));
+			found = List.of(relationship.describe());
+		}
+		out.println("Line " + command.line + ": " + String.join(",", fields) + ": " + found.size() + " found");
+		for (Object result : found)
+			out.println("\t" + (result instanceof Person person ? person.getId() + ": " + person : result));
+	}
+
+	/**
+	 * @return the ID of the labelled person for {@code $label}, or else the field
+	 */
+	private String id(String field) {
+		return field.startsWith("$") ? labels.get(field.substring(1)) : field;
+	}
+
+	/**
+	 * @return null for an empty field, otherwise the field
+	 */
+	private static String empty(String field) {
+		return field.isEmpty() ? null : field;
+	}
+
+	/**
+	 * Parses {@code YYYY-MM-DD} or a full instant
+	 * @return the date, or null for an empty field or {@code null}
+	 * @throws IllegalArgumentException if the field is not a date
+	 */
+	private static Date date(String field) {
+		if (field.isEmpty())
+			return null;
+		long millis = field.length() == 10 ? Application.day(field) : IsoInstant.parse(field);
+		if (millis == IsoInstant.INVALID)
+			throw new IllegalArgumentException("invalid date " + field);
+		return millis == IsoInstant.NONE ? null : new Date(millis);
+	}
+
+	/**
+	 * @return the sex written in the field, or null
+	 */
+	private static Sex sex(String field) {
+		switch (field.toLowerCase(Locale.ROOT)) {
+		case "male":
+		case "m":
+			return Sex.MALE;
+		case "female":
+		case "f":
+			return Sex.FEMALE;
+		case "other":
+		case "o":
+			return Sex.OTHER;
+		default:
+			return null;
+		}
+	}
+}
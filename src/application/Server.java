@@ -0,0 +1,175 @@
+package application;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import people.FamilyManager;
+
+/**
+ * Serves {@link Application} sessions over TCP on the loopback address. Each
+ * connection runs its own session on a virtual thread, so hundreds of users
+ * cost hundreds of small stacks rather than platform threads, and every session
+ * works on the one shared {@link FamilyManager}.
+ * <p>
+ * Sessions never save. The server commits the manager's journal every
+ * {@link #COMMIT_INTERVAL} milliseconds, folding the edits of every session
+ * into one fsync, and once more when it is closed.
+ */
+public class Server implements Closeable {
+
+	/**
+	 * Milliseconds between commits of the journal
+	 */
+	public static final long COMMIT_INTERVAL = 1000;
+
+	/**
+	 * Port served when none is given
+	 */
+	public static final int DEFAULT_PORT = 7777;
+
+	/**
+	 * The manager every session works on
+	 */
+	private final FamilyManager manager;
+
+	/**
+	 * Accepts connections
+	 */
+	private final ServerSocket socket;
+
+	/**
+	 * Where the server reports what it does
+	 */
+	private final PrintStream log;
+
+	/**
+	 * Connections with a session running
+	 */
+	private final Set<Socket> sessions = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Count of connections accepted, which numbers the sessions
+	 */
+	private final AtomicInteger accepted = new AtomicInteger();
+
+	/**
+	 * Commits the journal periodically
+	 */
+	private final Thread committer;
+
+	private volatile boolean closed;
+
+	/**
+	 * Starts listening on the loopback address
+	 * @param manager the manager to serve, loaded and journaling already
+	 * @param port the port to listen on, or 0 for any free port
+	 * @param log where to report sessions and problems
+	 * @throws IOException if the port cannot be bound
+	 */
+	public Server(FamilyManager manager, int port, PrintStream log) throws IOException {
+		this.manager = manager;
+		this.log = log;
+		socket = new ServerSocket(port, 256, InetAddress.getLoopbackAddress());
+		committer = Thread.ofVirtual().name("committer").start(this::commitPeriodically);
+	}
+
+	/**
+	 * @return the port the server listens on
+	 */
+	public int getPort() {
+		return socket.getLocalPort();
+	}
+
+	/**
+	 * @return count of sessions running
+	 */
+	public int getSessions() {
+		return sessions.size();
+	}
+
+	/**
+	 * Accepts connections, starting a session for each, until the server is
+	 * closed
+	 */
+	public void run() {
+		log.println("Serving on " + socket.getInetAddress().getHostAddress() + ":" + getPort());
+		while (!closed) {
+			Socket client;
+			try {
+				client = socket.accept();
+			} catch (IOException e) {
+				if (!closed)
+					log.println("Cannot accept connection: " + e.getMessage());
+				continue;
+			}
+			sessions.add(client);
+			Thread.ofVirtual().name("session-" + accepted.incrementAndGet()).start(() -> session(client));
+		}
+	}
+
+	/**
+	 * Runs a session on the connection until the user exits or disconnects
+	 */
+	private void session(Socket client) {
+		try (client) {
+			PrintStream out = new PrintStream(client.getOutputStream(), true, StandardCharsets.UTF_8);
+			new Application(client.getInputStream(), out, manager).session();
+		} catch (SocketException e) {
+			// the user disconnected
+		} catch (IOException | RuntimeException e) {
+			log.println("Session ended by error: " + e);
+		} finally {
+			sessions.remove(client);
+		}
+	}
+
+	/**
+	 * Commits the journal every {@link #COMMIT_INTERVAL} until the server is
+	 * closed
+	 */
+	private void commitPeriodically() {
+		while (!closed) {
+			try {
+				Thread.sleep(COMMIT_INTERVAL);
+			} catch (InterruptedException e) {
+				return;
+			}
+			try {
+				manager.commit();
+			} catch (IOException e) {
+				log.println("Cannot save edits: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting connections, ends every session and makes every edit
+	 * durable
+	 * @throws IOException if the edits cannot be written
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		socket.close();
+		for (Socket client : sessions)
+			client.close();
+		committer.interrupt();
+		try {
+			committer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		manager.commit();
+	}
+}
@@ -0,0 +1,208 @@
+package people;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import people.Person.Sex;
+
+/**
+ * Keeps people in columns of primitives, one array per value, so a person
+ * costs about 30 bytes and no objects of its own. Names are interned in a
+ * dictionary and stored as codes. Names are interned only by the manager's
+ * edits, under its write lock, since the dictionary is not synchronised.
+ */
+final class ColumnarPersonStore extends PersonStore {
+
+	/**
+	 * Code of a null name, or value of {@link #sexes} for a null sex
+	 */
+	private static final int NULL = -1;
+
+	private static final Sex[] SEXES = Sex.values();
+
+	/**
+	 * Every person ID, shared with the manager
+	 */
+	private final IdTable ids;
+
+	/**
+	 * Every first and last name, matched exactly
+	 */
+	private final IdTable names = new IdTable(false);
+
+	/**
+	 * IDs spelt differently from their first spelling in {@link #ids}, by row
+	 */
+	private final Map<Integer, String> spellings = new HashMap<Integer, String>();
+
+	/**
+	 * The number of each row's ID, kept once the row is removed so
+	 * {@link #id(int)} still reads it, as {@link ObjectPersonStore} does
+	 */
+	private int[] nodes = new int[16];
+
+	/**
+	 * Rows removed
+	 */
+	private final BitSet removed = new BitSet();
+
+	/**
+	 * Codes of each row's names in {@link #names}
+	 */
+	private int[] firstNames = new int[16];
+	private int[] lastNames = new int[16];
+
+	/**
+	 * Ordinal of each row's sex
+	 */
+	private byte[] sexes = new byte[16];
+
+	/**
+	 * Epoch milliseconds of each row's birth and death
+	 */
+	private long[] births = new long[16];
+	private long[] deaths = new long[16];
+
+	/**
+	 * Count of rows handed out
+	 */
+	private int rows;
+
+	/**
+	 * Count of people held
+	 */
+	private int size;
+
+	/**
+	 * @param ids the manager's person IDs
+	 */
+	ColumnarPersonStore(IdTable ids) {
+		this.ids = ids;
+	}
+
+	@Override
+	int add(int node, String id, String firstName, String lastName, Sex sex, long birth, long death) {
+		if (rows == nodes.length) {
+			int length = rows * 2;
+			nodes = Arrays.copyOf(nodes, length);
+			firstNames = Arrays.copyOf(firstNames, length);
+			lastNames = Arrays.copyOf(lastNames, length);
+			sexes = Arrays.copyOf(sexes, length);
+			births = Arrays.copyOf(births, length);
+			deaths = Arrays.copyOf(deaths, length);
+		}
+		int row = rows++;
+		nodes[row] = node;
+		if (!id.equals(ids.name(node)))
+			spellings.put(row, id);
+		firstNames[row] = code(firstName);
+		lastNames[row] = code(lastName);
+		sexes[row] = (byte) (sex == null ? NULL : sex.ordinal());
+		births[row] = birth;
+		deaths[row] = death;
+		size++;
+		return row;
+	}
+
+	@Override
+	void remove(int row) {
+		if (!removed.get(row)) {
+			removed.set(row);
+			size--;
+		}
+	}
+
+	@Override
+	int next(int row) {
+		row = removed.nextClearBit(row + 1);
+		return row < rows ? row : -1;
+	}
+
+	@Override
+	int rows() {
+		return rows;
+	}
+
+	@Override
+	int size() {
+		return size;
+	}
+
+	@Override
+	int node(int row) {
+		return nodes[row];
+	}
+
+	@Override
+	String id(int row) {
+		String id = spellings.get(row);
+		return id != null ? id : ids.name(nodes[row]);
+	}
+
+	@Override
+	String firstName(int row) {
+		return name(firstNames[row]);
+	}
+
+	@Override
+	void setFirstName(int row, String firstName) {
+		firstNames[row] = code(firstName);
+	}
+
+	@Override
+	String lastName(int row) {
+		return name(lastNames[row]);
+	}
+
+	@Override
+	void setLastName(int row, String lastName) {
+		lastNames[row] = code(lastName);
+	}
+
+	@Override
+	Sex sex(int row) {
+		int sex = sexes[row];
+		return sex == NULL ? null : SEXES[sex];
+	}
+
+	@Override
+	void setSex(int row, Sex sex) {
+		sexes[row] = (byte) (sex == null ? NULL : sex.ordinal());
+	}
+
+	@Override
+	long birth(int row) {
+		return births[row];
+	}
+
+	@Override
+	void setBirth(int row, long birth) {
+		births[row] = birth;
+	}
+
+	@Override
+	long death(int row) {
+		return deaths[row];
+	}
+
+	@Override
+	void setDeath(int row, long death) {
+		deaths[row] = death;
+	}
+
+	/**
+	 * @return the code of the name in {@link #names}, or {@link #NULL}
+	 */
+	private int code(String name) {
+		return name == null ? NULL : names.intern(name);
+	}
+
+	/**
+	 * @return the name with the code, or null for {@link #NULL}
+	 */
+	private String name(int code) {
+		return code == NULL ? null : names.name(code);
+	}
+}
@@ -0,0 +1,382 @@
+package people;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+
+import people.Person.Sex;
+import saveIO.IsoInstant;
+
+/**
+ * Finds records that may be the same person, such as someone entered once in
+ * each family of a merged log. Comparing every pair would take years for
+ * millions of people, so records are grouped into blocks by normalised last
+ * name and year of birth, and only records in the same block are compared.
+ * Within a block records are ordered by first name; blocks of up to
+ * {@link #PAIRWISE} records are compared pair by pair and larger ones only
+ * within a window of {@link #WINDOW} neighbours, so a block of common names
+ * costs no more than a pass over it.
+ * <p>
+ * A pair scores from 0 to 1: mostly how close the first names are by edit
+ * distance, then how close the birth and death dates are, then whether the sex
+ * agrees. An unknown name or date counts as half agreeing, and a man and a
+ * woman never match. Each record is reported with its best match among the
+ * records added before it.
+ * <p>
+ * The records are copied when the finder is created, which must be done under
+ * the manager's lock; normalising, blocking and scoring then run on a
+ * {@link ForkJoinPool} without it.
+ */
+final class DuplicateFinder {
+
+	/**
+	 * Largest block compared pair by pair
+	 */
+	private static final int PAIRWISE = 256;
+
+	/**
+	 * Neighbours each record of a larger block is compared with
+	 */
+	private static final int WINDOW = 16;
+
+	/**
+	 * Fewest records worth a task of their own
+	 */
+	private static final int LEAF = 4096;
+
+	private static final double FIRST_NAME = 0.5;
+	private static final double BIRTH = 0.25;
+	private static final double DEATH = 0.15;
+	private static final double SEX = 0.1;
+
+	/**
+	 * How much an unknown name, date or sex agrees
+	 */
+	private static final double UNKNOWN = 0.5;
+
+	/**
+	 * Days apart at which births, within the same year, stop agreeing
+	 */
+	private static final double BIRTH_DAYS = 366;
+
+	/**
+	 * Days apart at which deaths stop agreeing
+	 */
+	private static final double DEATH_DAYS = 3653;
+
+	private static final double DAY = 86_400_000;
+
+	private static final int UNKNOWN_YEAR = Integer.MIN_VALUE;
+
+	/**
+	 * Most alike first, then in the order the records were added
+	 */
+	private static final Comparator<Match> BEST_FIRST = Comparator.comparingDouble((Match match) -> -match.score)
+			.thenComparingInt(match -> match.first).thenComparingInt(match -> match.second);
+
+	/**
+	 * Two rows that may be the same person
+	 */
+	static final class Match {
+
+		/**
+		 * The lower row
+		 */
+		final int first;
+		final int second;
+		final double score;
+
+		private Match(int first, int second, double score) {
+			this.first = first;
+			this.second = second;
+			this.score = score;
+		}
+	}
+
+	private final ForkJoinPool pool;
+
+	private final int count;
+
+	/**
+	 * Row of each record copied, in row order
+	 */
+	private final int[] rows;
+
+	/**
+	 * Names of each record, normalised by {@link #find(double, int)}
+	 */
+	private final String[] firstNames;
+	private final String[] lastNames;
+
+	private final Sex[] sexes;
+	private final long[] births;
+	private final long[] deaths;
+
+	/**
+	 * Copies every record in the store; the caller must hold the lock guarding
+	 * it
+	 *
+	 * @param people the store to search
+	 * @param pool   the pool to search on
+	 */
+	DuplicateFinder(PersonStore people, ForkJoinPool pool) {
+		this.pool = pool;
+		count = people.size();
+		rows = new int[count];
+		firstNames = new String[count];
+		lastNames = new String[count];
+		sexes = new Sex[count];
+		births = new long[count];
+		deaths = new long[count];
+		int i = 0;
+		for (int row = people.next(-1); row >= 0; row = people.next(row), i++) {
+			rows[i] = row;
+			firstNames[i] = people.firstName(row);
+			lastNames[i] = people.lastName(row);
+			sexes[i] = people.sex(row);
+			births[i] = people.birth(row);
+			deaths[i] = people.death(row);
+		}
+	}
+
+	/**
+	 * Scores the records against each other in their blocks
+	 *
+	 * @param minScore lowest score returned
+	 * @param limit    most pairs returned
+	 * @return pairs scoring at least {@code minScore}, most alike first, only the
+	 *         best for each later record
+	 */
+	List<Match> find(double minScore, int limit) {
+		int[] years = new int[count];
+		forEach(i -> {
+			firstNames[i] = PersonIndex.normalise(firstNames[i]);
+			lastNames[i] = PersonIndex.normalise(lastNames[i]);
+			years[i] = births[i] == IsoInstant.NONE ? UNKNOWN_YEAR : (int) IsoInstant.year(births[i]);
+		});
+		int[] order = new int[count];
+		int[] ends = new int[count];
+		block(years, order, ends);
+		List<Match> found = pool.invoke(new Score(order, ends, minScore, 0, count));
+		found.sort(BEST_FIRST);
+		// keep the best match of each record with an earlier one, so k copies of
+		// someone give k - 1 pairs rather than every pair
+		List<Match> best = new ArrayList<Match>();
+		BitSet matched = new BitSet();
+		for (Match match : found) {
+			if (best.size() == limit)
+				break;
+			if (!matched.get(match.second)) {
+				matched.set(match.second);
+				best.add(match);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Orders the records by block, then by first name, and works out how far
+	 * along that order each is compared
+	 *
+	 * @param years the year of birth of each record
+	 * @param order filled with the records in order
+	 * @param ends  filled with the position, in {@code order}, before which each
+	 *              position is compared
+	 */
+	private void block(int[] years, int[] order, int[] ends) {
+		// rank first names alphabetically, unknown first
+		Map<String, Integer> ranks = new HashMap<String, Integer>();
+		for (String name : firstNames) {
+			if (name != null)
+				ranks.putIfAbsent(name, 0);
+		}
+		String[] names = ranks.keySet().toArray(new String[0]);
+		Arrays.parallelSort(names);
+		for (int i = 0; i < names.length; i++)
+			ranks.put(names[i], i + 1);
+		int[] rank = new int[count];
+		for (int i = 0; i < count; i++)
+			rank[i] = firstNames[i] == null ? 0 : ranks.get(firstNames[i]);
+		int[] byName = new int[count];
+		countingSort(null, rank, names.length + 1, byName);
+
+		// number the blocks, by last name and year of birth
+		Map<String, Integer> surnames = new HashMap<String, Integer>();
+		Map<Long, Integer> blocks = new HashMap<Long, Integer>();
+		int[] block = new int[count];
+		for (int i = 0; i < count; i++) {
+			Integer surname = surnames.get(lastNames[i]);
+			if (surname == null) {
+				surname = surnames.size();
+				surnames.put(lastNames[i], surname);
+			}
+			Long key = (long) surname << 32 | (years[i] & 0xFFFFFFFFL);
+			Integer number = blocks.get(key);
+			if (number == null) {
+				number = blocks.size();
+				blocks.put(key, number);
+			}
+			block[i] = number;
+		}
+		int[] starts = countingSort(byName, block, blocks.size(), order);
+
+		for (int b = 0; b < blocks.size(); b++) {
+			int start = starts[b];
+			int end = starts[b + 1];
+			for (int p = start; p < end; p++)
+				ends[p] = end - start <= PAIRWISE ? end : Math.min(end, p + 1 + WINDOW);
+		}
+	}
+
+	/**
+	 * Stably sorts records by a key
+	 *
+	 * @param in   the records in their current order, or null for 0 to count
+	 * @param keys the key of each record, below {@code size}
+	 * @param out  filled with the records ordered by key
+	 * @return the position in {@code out} where each key starts, and the count
+	 *         of records at the end
+	 */
+	private int[] countingSort(int[] in, int[] keys, int size, int[] out) {
+		int[] starts = new int[size + 1];
+		for (int key : keys)
+			starts[key + 1]++;
+		for (int key = 0; key < size; key++)
+			starts[key + 1] += starts[key];
+		int[] next = Arrays.copyOf(starts, size);
+		for (int i = 0; i < count; i++) {
+			int record = in == null ? i : in[i];
+			out[next[keys[record]]++] = record;
+		}
+		return starts;
+	}
+
+	/**
+	 * Scores the pairs starting at a range of positions in the order
+	 */
+	@SuppressWarnings("serial")
+	private class Score extends RecursiveTask<List<Match>> {
+
+		private final int[] order;
+		private final int[] ends;
+		private final double minScore;
+		private final int from;
+		private final int to;
+
+		Score(int[] order, int[] ends, double minScore, int from, int to) {
+			this.order = order;
+			this.ends = ends;
+			this.minScore = minScore;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<Match> compute() {
+			if (to - from > LEAF) {
+				int middle = (from + to) >>> 1;
+				Score right = new Score(order, ends, minScore, middle, to);
+				right.fork();
+				List<Match> found = new Score(order, ends, minScore, from, middle).compute();
+				found.addAll(right.join());
+				return found;
+			}
+			List<Match> found = new ArrayList<Match>();
+			for (int p = from; p < to; p++) {
+				int a = order[p];
+				for (int q = p + 1; q < ends[p]; q++) {
+					int b = order[q];
+					double score = score(a, b, minScore);
+					if (score >= minScore)
+						found.add(new Match(Math.min(rows[a], rows[b]), Math.max(rows[a], rows[b]), score));
+				}
+			}
+			return found;
+		}
+	}
+
+	/**
+	 * @return how alike the two records are, or less than the minimum if they
+	 *         cannot reach it
+	 */
+	private double score(int a, int b, double minScore) {
+		Sex sexA = sexes[a];
+		Sex sexB = sexes[b];
+		double sex;
+		if (sexA == null || sexB == null || sexA == Sex.OTHER || sexB == Sex.OTHER)
+			sex = sexA == sexB && sexA != null ? 1 : UNKNOWN;
+		else if (sexA == sexB)
+			sex = 1;
+		else
+			return 0;
+		double score = SEX * sex + BIRTH * dates(births[a], births[b], BIRTH_DAYS)
+				+ DEATH * dates(deaths[a], deaths[b], DEATH_DAYS);
+		if (score + FIRST_NAME < minScore)
+			return score;
+		return score + FIRST_NAME * names(firstNames[a], firstNames[b]);
+	}
+
+	/**
+	 * @return 1 for the same name, less the more edits apart they are
+	 */
+	private static double names(String a, String b) {
+		if (a == null || b == null)
+			return UNKNOWN;
+		if (a.equals(b))
+			return 1;
+		int longest = Math.max(a.length(), b.length());
+		int limit = longest / 2;
+		int distance = NameGrams.distance(a, b, limit);
+		return distance > limit ? 0 : 1 - (double) distance / longest;
+	}
+
+	/**
+	 * @param days how far apart the dates stop agreeing
+	 * @return 1 for the same instant, less the further apart they are
+	 */
+	private static double dates(long a, long b, double days) {
+		if (a == IsoInstant.NONE || b == IsoInstant.NONE)
+			return UNKNOWN;
+		return Math.max(0, 1 - Math.abs((double) a - b) / DAY / days);
+	}
+
+	/**
+	 * Runs the body for every record on the pool
+	 */
+	private void forEach(IntConsumer body) {
+		pool.invoke(new Each(body, 0, count));
+	}
+
+	@SuppressWarnings("serial")
+	private static class Each extends RecursiveAction {
+
+		private final IntConsumer body;
+		private final int from;
+		private final int to;
+
+		Each(IntConsumer body, int from, int to) {
+			this.body = body;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > LEAF) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Each(body, from, middle), new Each(body, middle, to));
+				return;
+			}
+			for (int i = from; i < to; i++)
+				body.accept(i);
+		}
+	}
+}
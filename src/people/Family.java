@@ -1,6 +1,7 @@
 package people;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 /**
  * Defines the biological family
@@ -20,17 +21,28 @@ public class Family {
 	private String surname;
 	
 	/**
-	 * people in this {@link #Family()}
+	 * Holds the people in this {@link #Family()}
 	 */
-	protected List<Person> people;
+	private final PersonStore store;
+	
+	/**
+	 * rows of the people in this {@link #Family()}, in {@link #store}
+	 */
+	int[] people = new int[4];
+	
+	/**
+	 * Count of {@link #people}
+	 */
+	int size;
 	
 	/**
 	 * Creates a empty family with specified ID
 	 * @param id the specified ID of family
+	 * @param store holds the people of the family
 	 */
-	protected Family(String id) {
+	protected Family(String id, PersonStore store) {
 		this.id = id;
-		this.people = new ArrayList<Person>();
+		this.store = store;
 	}
 
 	/**
@@ -60,22 +72,51 @@ public class Family {
 	 * @return the peopleID
 	 */
 	public List<String> getpeopleID() {
-		List<String> peopleIDs = new ArrayList<String>(people.size());
-		for(Person child: people) {
-			peopleIDs.add(child.getId());
+		List<String> peopleIDs = new ArrayList<String>(size);
+		for(int i = 0; i < size; i++) {
+			peopleIDs.add(store.id(people[i]));
 		}
 		return peopleIDs;
 	}
+	
+	/**
+	 * Adds the person in the row to this family
+	 * @param row the person's row
+	 */
+	void add(int row) {
+		if(size == people.length) people = Arrays.copyOf(people, size * 2);
+		people[size++] = row;
+	}
+	
+	/**
+	 * Removes every person whose ID has the specified number
+	 * @param node the number of the ID
+	 */
+	void removeNode(int node) {
+		int kept = 0;
+		for(int i = 0; i < size; i++) {
+			if(store.node(people[i]) != node) people[kept++] = people[i];
+		}
+		size = kept;
+	}
 
 
 	@Override
 	public String toString() {
-		String output = String.format("Family[id:"+ id+ " people=[");
-		for(Person child: people){
-			output = output + child.getFirstName() + ",";
+		return append(new StringBuilder(24 + size * 8)).toString();
+	}
+
+	/**
+	 * Writes this family the way {@link #toString()} does
+	 * @param output the builder to write to
+	 * @return the builder
+	 */
+	StringBuilder append(StringBuilder output) {
+		output.append("Family[id:").append(id).append(" people=[");
+		for(int i = 0; i < size; i++){
+			output.append(store.firstName(people[i])).append(',');
 		}
-		output = output+"]"; 
-		return output;
+		return output.append(']');
 	}
 
 
@@ -84,8 +125,7 @@ public class Family {
 	 * @return true if there is people in the family; false otherwise.
 	 */
 	public boolean hasPeople() {
-		if(people == null) return false;
-		if(people.size() == 0) return false;
+		if(size == 0) return false;
 		return true;
 	}
 }
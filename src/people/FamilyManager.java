@@ -4,28 +4,130 @@
 package people;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
-import java.time.Instant;
-import java.time.format.DateTimeParseException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import people.Metrics.Operation;
 import people.Person.Sex;
+import saveIO.IsoInstant;
+import saveIO.Journal;
+import saveIO.LogReader;
+import saveIO.LogRecord;
+import saveIO.LogWriter;
+import saveIO.ParallelLogReader;
+import saveIO.SnapshotReader;
+import saveIO.SnapshotWriter;
 
 /**
  * Manages a list of {@link #people people} who are in a list of {@link #family
  * Families}
+ * <p>
+ * A manager may be shared between threads. Edits take a {@link StampedLock}
+ * for writing; queries share it for reading, so they never block each other,
+ * and {@link #hasPerson(String)} reads optimistically without locking at all.
+ * Calls made while the lock is held by the calling thread, such as replayed
+ * journal edits, do not take it again. Queries hand out copies of people,
+ * taken under the lock, which keep the values they were found with, and
+ * cannot be edited; edit people through
+ * {@link #editPerson(String, String, String, Date, Date, Sex)}. Callbacks, such
+ * as a {@link TreeVisitor}, are called once the lock is released, so they may
+ * call back into the manager.
  */
-public class FamilyManager {
+public class FamilyManager implements FamilyManagerMXBean {
+
+	/**
+	 * Numbers every person ID ever seen, including IDs only named as a parent
+	 */
+	private IdTable ids = new IdTable();
+
+	/**
+	 * Hands out the IDs of new people, past every ID in {@link #ids}
+	 */
+	private final IdAllocator allocator = new IdAllocator();
+
+	/**
+	 * Parents and children of every ID in {@link #ids}
+	 */
+	private LinkGraph links = new LinkGraph(ids);
+
+	/**
+	 * Walks {@link #links}, one walker per thread
+	 */
+	private ThreadLocal<Lineage> lineage = ThreadLocal.withInitial(() -> new Lineage(links));
+
+	/**
+	 * How many generations up {@link #relate(String, String)} looks for common
+	 * ancestors
+	 */
+	public static final int RELATIONSHIP_GENERATIONS = 10;
+
+	/**
+	 * Score from which {@link #findDuplicates(double, int)} takes two records to
+	 * be worth merging: same names and sex with no dates, or close dates and a
+	 * first name spelled a little differently
+	 */
+	public static final double LIKELY_DUPLICATE = 0.75;
+
+	/**
+	 * Cursor of the first record {@link #render(Appendable, long, int)} writes
+	 */
+	public static final long FIRST = 0;
+
+	/**
+	 * Cursor {@link #render(Appendable, long, int)} returns once every record is
+	 * written
+	 */
+	public static final long END = -1;
+
+	/**
+	 * Added to a row to make the cursor of a person; cursors below it are the
+	 * indexes of families
+	 */
+	private static final long PEOPLE = 1L << 32;
+
+	/**
+	 * Most records {@link #render(Appendable, long, int)} builds under one hold of
+	 * the lock
+	 */
+	private static final int RENDER_CHUNK = 512;
+
+	/**
+	 * Relates people in {@link #links}
+	 */
+	private Kinship kinship = new Kinship(new Lineage(links), RELATIONSHIP_GENERATIONS);
+
+	/**
+	 * Orders {@link #links} so that links closing a loop are refused
+	 */
+	private TopologicalOrder topology = new TopologicalOrder(links);
+
+	/**
+	 * Every {@code Person} in the family, by row
+	 */
+	private PersonStore people;
 
 	/**
-	 * Every {@code Person} in the family
+	 * Names and dates of {@link #people}
 	 */
-	private List<Person> people = new ArrayList<Person>();
+	private PersonIndex index;
 
 	/**
 	 * Every {@code Family}
@@ -33,104 +135,467 @@ public class FamilyManager {
 	private List<Family> family = new ArrayList<Family>();
 
 	/**
-	 * Reads from file
+	 * Row in {@link #people} of each number in {@link #ids}, or -1. When more than
+	 * one person shares an ID the first one in {@link #people} is indexed.
+	 */
+	private int[] personIndex = new int[0];
+
+	/**
+	 * Later rows of the people sharing an ID, by its number, for IDs held by
+	 * more than one person
+	 */
+	private Map<Integer, Rows> sharedIds = new HashMap<Integer, Rows>();
+
+	/**
+	 * Index of {@link #family} by {@link #key(String) normalised} ID
+	 */
+	private Map<String, Family> familyIndex = new HashMap<String, Family>();
+
+	/**
+	 * Families each person ID belongs to, by {@link #key(String) normalised} ID
+	 */
+	private Map<String, Set<Family>> memberships = new HashMap<String, Set<Family>>();
+
+	/**
+	 * Smallest journal worth folding back into its base file
+	 */
+	private static final long COMPACT_MIN = 1 << 20;
+
+	/**
+	 * Edits made since {@link #journalBase} was written; null when edits are not
+	 * journaled
+	 */
+	private Journal journal;
+
+	/**
+	 * The family log {@link #journal} applies to
+	 */
+	private File journalBase;
+
+	/**
+	 * Problems found in lines of the last file read, and in its journal
+	 */
+	private List<String> readProblems = new ArrayList<String>();
+
+	/**
+	 * Held for writing by edits and for reading by queries
+	 */
+	private final StampedLock lock = new StampedLock();
+
+	/**
+	 * The thread holding {@link #lock} for writing, if any
+	 */
+	private volatile Thread writer;
+
+	/**
+	 * Held while writing a file, so queries writing files take turns, and while
+	 * the journal is forced to disk, reset or closed. Taken after {@link #lock}
+	 * when both are held.
+	 */
+	private final Object output = new Object();
+
+	/**
+	 * Times every operation, once recording is turned on
+	 */
+	private final Metrics metrics = new Metrics();
+
+	/**
+	 * Person records and bytes in the last family log written
+	 */
+	private volatile long savedRecords;
+	private volatile long savedBytes;
+
+	/**
+	 * Creates an empty manager that keeps each person as an object
+	 */
+	public FamilyManager() {
+		this(false);
+	}
+
+	/**
+	 * Creates an empty manager
+	 * 
+	 * @param columnar true to keep people in columns of primitives, which takes a
+	 *                 fraction of the heap
+	 * @see ColumnarPersonStore
+	 */
+	public FamilyManager(boolean columnar) {
+		people = columnar ? new ColumnarPersonStore(ids) : new ObjectPersonStore(links);
+		index = new PersonIndex(people);
+	}
+
+	/**
+	 * Reads from file. Malformed lines are skipped and listed in
+	 * {@link #getReadProblems()}.
 	 * 
 	 * @param file
-	 * @throws FileNotFoundException
+	 * @throws IOException if the file cannot be read
+	 */
+	public void read(File file) throws IOException {
+		read(file, false);
+	}
+
+	/**
+	 * Reads from file, optionally parsing it on every core. Both modes load the
+	 * same people and families in the same order.
+	 * 
+	 * @param file     the file to read
+	 * @param parallel true to parse chunks of the file in parallel
+	 * @throws IOException if the file cannot be read
+	 * @see ParallelLogReader
+	 */
+	public void read(File file, boolean parallel) throws IOException {
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			// 1,0,Carson,Fujita,MALE,2001-09-14T10:00:00Z,2222-10-10T10:00:00Z
+			readProblems.clear();
+			List<Link> pending = new ArrayList<Link>();
+			if (parallel) {
+				new ParallelLogReader().read(file, record -> load(record, pending));
+			} else {
+				try (LogReader reader = new LogReader(new FileInputStream(file))) {
+					LogRecord record = new LogRecord();
+					while (reader.next(record))
+						load(record, pending);
+				}
+			}
+			buildLinks(pending);
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.READ, start);
+		}
+	}
+
+	/**
+	 * Loads the family log, from its binary snapshot,
+	 * {@code <base>.snapshot}, when that mirrors the current log. Otherwise the
+	 * text is read and a new snapshot is written for the next load. A damaged
+	 * snapshot is listed in {@link #getReadProblems()}, and whatever was read
+	 * from it is dropped before the text is read instead.
+	 * 
+	 * @param file     the family log
+	 * @param parallel true to parse the text on every core
+	 * @throws IOException if neither the snapshot nor the text can be read
 	 */
-	public void read(File file) throws FileNotFoundException, ArrayIndexOutOfBoundsException {
-		// 1,0,Carson,Fujita,MALE,2001-09-14T10:00:00Z,2222-10-10T10:00:00Z
-		Scanner reader = null;
+	public void load(File file, boolean parallel) throws IOException {
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			readProblems.clear();
+			String damaged = null;
+			try {
+				if (readSnapshot(file))
+					return;
+			} catch (IOException e) {
+				damaged = e.getMessage();
+				clear();
+			}
+			read(file, parallel);
+			if (damaged != null)
+				readProblems.add("Snapshot not used: " + damaged);
+			try {
+				writeSnapshot(file);
+			} catch (IOException e) {
+				readProblems.add("Cannot write snapshot: " + e.getMessage());
+			}
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.LOAD, start);
+		}
+	}
 
+	/**
+	 * Writes a binary snapshot of every person, family and parent/child link,
+	 * tied to the current version of the family log
+	 * 
+	 * @param base the family log the snapshot mirrors; the snapshot is written to
+	 *             {@code <base>.snapshot}
+	 * @throws IOException if the snapshot cannot be written
+	 * @see SnapshotWriter
+	 */
+	public void writeSnapshot(File base) throws IOException {
+		long start = metrics.start();
+		long stamp = lockRead();
 		try {
-			reader = new Scanner(file);
+			synchronized (output) {
+				try (SnapshotWriter writer = new SnapshotWriter(snapshotFile(base), base)) {
+					writer.nextId(allocator.peek());
+					int[] numbers = new int[people.rows()];
+					for (int row = people.next(-1); row >= 0; row = people.next(row))
+						numbers[row] = snapshot(writer, row);
+					for (Family fam : family) {
+						int[] members = new int[fam.size];
+						for (int i = 0; i < members.length; i++)
+							members[i] = numbers[fam.people[i]];
+						writer.family(fam.getId(), members);
+					}
+					writer.commit();
+				}
+			}
+		} finally {
+			unlockRead(stamp);
+			metrics.stop(Operation.WRITE_SNAPSHOT, start);
+		}
+	}
+
+	/**
+	 * Adds the person in the row to the snapshot. Links are shared by everyone
+	 * with an ID, so they are only stored with the indexed person.
+	 * 
+	 * @return the person's number in the snapshot
+	 */
+	private int snapshot(SnapshotWriter writer, int row) {
+		int node = people.node(row);
+		String[] parents = { null, null };
+		List<String> children = List.of();
+		if (personIndex[node] == row) {
+			parents = links.parentIDs(node);
+			children = links.childIDs(node);
+		}
+		return writer.person(people.id(row), people.firstName(row), people.lastName(row), people.sex(row),
+				people.birth(row), people.death(row), parents[0], parents[1], children);
+	}
 
-			while (reader.hasNext()) {
-				String record = reader.nextLine();
+	/**
+	 * Reads the binary snapshot of the family log if it mirrors the log's current
+	 * version
+	 * 
+	 * @param base the family log
+	 * @return false, having read nothing, if there is no such snapshot
+	 * @throws IOException if the snapshot cannot be read or is damaged
+	 */
+	public boolean readSnapshot(File base) throws IOException {
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			kinship.clear();
+			boolean read = SnapshotReader.read(snapshotFile(base), base, new SnapshotReader.Target() {
 
-				String[] field = record.split(",");
+				/**
+				 * Row of each person in the snapshot, by number
+				 */
+				private int[] numbered = new int[1024];
+				private int count;
 
-				// get family, but if it is null create a new one
-				Family fam = getFamily(field[0]);
-				if (fam == null) {
-					fam = new Family(field[0]);
-					family.add(fam);
+				@Override
+				public void nextId(long next) {
+					allocator.advance(next);
 				}
-				// determine sex
-				Sex dudesSex;
-				switch (field[4]) {
-				case "MALE":
-					dudesSex = Sex.MALE;
-					break;
-				case "FEMALE":
-					dudesSex = Sex.FEMALE;
-					break;
-				case "OTHER":
-					dudesSex = Sex.OTHER;
-					break;
-				default:
-					dudesSex = Sex.OTHER;
 
+				@Override
+				public void person(String id, String firstName, String lastName, Sex sex, long birth, long death,
+						String motherID, String fatherID, List<String> children) {
+					boolean linked = getPerson(id) >= 0;
+					int row = insertPerson(id, firstName, lastName, birth, death, sex);
+					int node = people.node(row);
+					if (!linked) {
+						int mother = number(motherID);
+						int father = number(fatherID);
+						links.setParents(node, mother, father);
+						if (mother != LinkGraph.NONE)
+							links.addChild(mother, node);
+						if (father != LinkGraph.NONE && father != mother)
+							links.addChild(father, node);
+					}
+					if (count == numbered.length)
+						numbered = Arrays.copyOf(numbered, count * 2);
+					numbered[count++] = row;
 				}
 
-				Person dude = new Person(field[1], field[2], dudesSex);
-				dude.lastName = field[3];
-				try {
-					dude.birthday = Date.from(Instant.parse(field[5]));
-					dude.deathDate = Date.from(Instant.parse(field[6]));
-				} catch (DateTimeParseException e) {
-					//do nothing about this; there is no valid dates
+				@Override
+				public void family(String id, int[] members) {
+					Family fam = getFamily(id);
+					if (fam == null) {
+						fam = new Family(id, people);
+						family.add(fam);
+						familyIndex.put(key(id), fam);
+					}
+					for (int member : members)
+						addMember(fam, numbered[member]);
 				}
+			});
+			if (read)
+				topology.rebuild(ids.size(), readProblems, ids);
+			return read;
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.READ_SNAPSHOT, start);
+		}
+	}
+
+	/**
+	 * Forgets every person, family and link, as before anything was read. IDs
+	 * already handed out stay used.
+	 */
+	private void clear() {
+		boolean columnar = people instanceof ColumnarPersonStore;
+		ids = new IdTable();
+		links = new LinkGraph(ids);
+		lineage = ThreadLocal.withInitial(() -> new Lineage(links));
+		kinship = new Kinship(new Lineage(links), RELATIONSHIP_GENERATIONS);
+		topology = new TopologicalOrder(links);
+		people = columnar ? new ColumnarPersonStore(ids) : new ObjectPersonStore(links);
+		index = new PersonIndex(people);
+		family = new ArrayList<Family>();
+		personIndex = new int[0];
+		sharedIds = new HashMap<Integer, Rows>();
+		familyIndex = new HashMap<String, Family>();
+		memberships = new HashMap<String, Set<Family>>();
+	}
+
+	/**
+	 * @return the snapshot file of the family log
+	 */
+	private static File snapshotFile(File base) {
+		return new File(base.getPath() + ".snapshot");
+	}
+
+	/**
+	 * Adds the person in the record to its family, creating the family if needed.
+	 * Links are collected for {@link #buildLinks(List)}.
+	 * 
+	 * @param record  a record read from a log
+	 * @param pending the links read so far
+	 */
+	private void load(LogRecord record, List<Link> pending) {
+		if (record.getProblem() != null)
+			readProblems.add("Line " + record.getLine() + ": " + record.getProblem());
+		if (!record.isComplete())
+			return;
+
+		switch (record.getKind()) {
+		case HEADER:
+			if (record.getVersion() > LogRecord.VERSION)
+				readProblems.add("Line " + record.getLine() + ": written in newer format version "
+						+ record.getVersion() + "; unknown lines are skipped");
+			return;
+		case LINK:
+			pending.add(new Link(record));
+			return;
+		case NEXT_ID:
+			allocator.advance(record.getNextId());
+			return;
+		default:
+			break;
+		}
+
+		// get family, but if it is null create a new one
+		Family fam = getFamily(record.getFamilyID());
+		if (fam == null) {
+			fam = new Family(record.getFamilyID(), people);
+			family.add(fam);
+			familyIndex.put(key(fam.getId()), fam);
+		}
+
+		//add people
+		int row = insertPerson(record.getPersonID(), record.getFirstName(), record.getLastName(), record.getBirth(),
+				record.getDeath(), record.getSex());
+		addMember(fam, row);
+	}
+
+	/**
+	 * The parents of a child, as read from a log
+	 */
+	private static class Link {
+
+		final long line;
+		final String personID;
+		final String motherID;
+		final String fatherID;
+
+		Link(LogRecord record) {
+			line = record.getLine();
+			personID = record.getPersonID();
+			motherID = record.getMotherID();
+			fatherID = record.getFatherID();
+		}
+	}
 
-				//add people
-				people.add(dude);
-				fam.people.add(dude);
-				//family.add(fam);
+	/**
+	 * Fills in every parent and child list in one pass once all people are
+	 * loaded. Parents that are not in the log stay recorded by ID, as they would
+	 * after {@link #removePerson(String)}. Links that would make someone their
+	 * own ancestor are dropped and reported.
+	 * 
+	 * @param pending the links read from the log, in file order
+	 */
+	private void buildLinks(List<Link> pending) {
+		for (Link link : pending) {
+			int child = ids.find(link.personID);
+			if (getPerson(link.personID) < 0) {
+				readProblems.add("Line " + link.line + ": link for unknown person " + link.personID);
+				continue;
+			}
+			if (links.hasParents(child)) {
+				readProblems.add("Line " + link.line + ": second link for " + link.personID + "; ignored");
+				continue;
 			}
-		} catch (Exception e) {
-			reader.close();
-			throw e;
+			int mother = number(link.motherID);
+			int father = number(link.fatherID);
+			links.setParents(child, mother, father);
+			if (mother != LinkGraph.NONE)
+				links.addChild(mother, child);
+			if (father != LinkGraph.NONE && father != mother)
+				links.addChild(father, child);
+		}
+		topology.rebuild(ids.size(), readProblems, ids);
+		kinship.clear();
+	}
+
+	/**
+	 * @return the problems found in lines of the last file read, each prefixed
+	 *         with its line number
+	 */
+	public List<String> getReadProblems() {
+		long stamp = lockRead();
+		try {
+			return new ArrayList<String>(readProblems);
 		} finally {
-			reader.close();
+			unlockRead(stamp);
 		}
 	}
 
 	/**
-	 * Writes data to specified file. Only writes people in a family and families with people.
+	 * Writes data to specified file. Only writes people in a family and families with people,
+	 * followed by the parents of each person written.
+	 * The file is replaced atomically, so a failed write leaves the previous copy intact.
 	 * @param file specified file to write to
-	 * @throws FileNotFoundException
-	 */
-	public void write(File file) throws FileNotFoundException {
-		PrintWriter writer = null;
-
-		try {
-			writer = new PrintWriter(file);
-
-			for (Family fam : family) {
-				if (fam.hasPeople()) {
-					for (Person dude : fam.people) {
-						writer.print(fam.getId());
-						writer.print("," + dude.getId() + "," + dude.getFirstName() + "," + dude.getLastName() + ","
-								+ dude.getSex() + ",");
-						if (dude.getBirthday() != null)
-							writer.print(dude.getBirthday().toInstant());
-						else
-							writer.print("null");
-						writer.print(","); // separator
-						if (dude.getDeathDate() != null)
-							writer.print(dude.getDeathDate().toInstant());
-						else
-							writer.print("null");
-						writer.print("\n");
+	 * @throws IOException if the file cannot be written
+	 * @see LogWriter
+	 */
+	public void write(File file) throws IOException {
+		long start = metrics.start();
+		long stamp = lockRead();
+		try {
+			synchronized (output) {
+				try (LogWriter writer = new LogWriter(file)) {
+					writer.header();
+					writer.nextId(allocator.peek());
+					for (Family fam : family) {
+						for (int i = 0; i < fam.size; i++) {
+							int row = fam.people[i];
+							writer.write(fam.getId(), people.id(row), people.firstName(row), people.lastName(row),
+									people.sex(row), people.birth(row), people.death(row));
+						}
 					}
+					for (int row = people.next(-1); row >= 0; row = people.next(row)) {
+						int node = people.node(row);
+						if (links.hasParents(node) && personIndex[node] == row && memberships.containsKey(key(people.id(row)))) {
+							String[] parents = links.parentIDs(node);
+							writer.link(people.id(row), parents[0], parents[1]);
+						}
+					}
+					writer.commit();
+					if (journal != null && file.getAbsoluteFile().equals(journalBase.getAbsoluteFile()))
+						journal.reset();
+					savedRecords = writer.getRecords();
+					savedBytes = writer.getBytes();
 				}
 			}
-			System.out.println("Write to the file was successful.");
-		} catch (FileNotFoundException e) {
-			throw e;
 		} finally {
-			if (writer != null)
-				writer.close();
+			unlockRead(stamp);
+			metrics.stop(Operation.WRITE, start);
 		}
 	}
 
@@ -142,10 +607,46 @@ public class FamilyManager {
 	 * @return the ID of the new person
 	 */
 	public String createNewPerson(String firstName, Sex sex) {
-		String newID = Integer.toString(people.size());
-		Person newPerson = new Person(newID, firstName, sex);
-		people.add(newPerson);
-		return newID;
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			String newID = allocator.next();
+			insertPerson(newID, firstName, null, IsoInstant.NONE, IsoInstant.NONE, sex);
+			try {
+				if (journal != null)
+					journal.addPerson(newID, firstName, null, IsoInstant.NONE, IsoInstant.NONE, sex);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return newID;
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.CREATE_PERSON, start);
+		}
+	}
+
+	/**
+	 * Adds a new person to {@link #people} under the specified ID
+	 * 
+	 * @param birth epoch milliseconds, or {@link IsoInstant#NONE}
+	 * @param death epoch milliseconds, or {@link IsoInstant#NONE}
+	 * @return the row of the new person
+	 */
+	private int insertPerson(String id, String name, String lastname, long birth, long death, Sex sex) {
+		allocator.seen(id);
+		int node = ids.intern(id);
+		int row = people.add(node, id, name, lastname, sex, birth, death);
+		index.add(row);
+		if (node >= personIndex.length) {
+			int length = personIndex.length;
+			personIndex = Arrays.copyOf(personIndex, Math.max(node + 1, Math.max(16, length * 2)));
+			Arrays.fill(personIndex, length, personIndex.length, -1);
+		}
+		if (personIndex[node] < 0)
+			personIndex[node] = row;
+		else
+			sharedIds.computeIfAbsent(node, shared -> new Rows()).add(row);
+		return row;
 	}
 
 	/**
@@ -155,50 +656,112 @@ public class FamilyManager {
 	 * @throws Exception if no person matches specified ID
 	 */
 	public void removePerson(String personID) throws Exception {
-		Person person = getPerson(personID);
-		if (person == null)
-			throw new Exception("Person under ID: " + personID + " does not exist");
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			int row = getPerson(personID);
+			if (row < 0)
+				throw new Exception("Person under ID: " + personID + " does not exist");
 		
-		//remove from every family the matching ID
-		for (Family fam : family) {
-			Iterator<Person> member = fam.people.iterator();
-			while (member.hasNext()) {
-				Person current = member.next();
-				if(current.getId().equals(personID))
-					fam.people.remove(current);
+			//remove from every family holding the matching ID
+			int node = people.node(row);
+			Set<Family> held = memberships.remove(key(personID));
+			if (held != null) {
+				for (Family fam : held)
+					fam.removeNode(node);
 			}
+			index.remove(row);
+			people.remove(row);
+			unindex(row, node);
+			if (journal != null)
+				journal.removePerson(personID);
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.REMOVE_PERSON, start);
 		}
-		people.remove(person);
+	}
+
+	/**
+	 * Removes the specified person from {@link #personIndex}. If another person
+	 * shares the ID, the next one in {@link #people} takes its place. Links
+	 * belong to the ID rather than the person, so they are kept either way.
+	 * 
+	 * @param row  the row that was removed from {@link #people}
+	 * @param node the number of the removed person's ID
+	 */
+	private void unindex(int row, int node) {
+		Rows shared = sharedIds.get(node);
+		if (shared == null) {
+			if (personIndex[node] == row)
+				personIndex[node] = -1;
+			return;
+		}
+		if (personIndex[node] == row) {
+			row = shared.get(0);
+			personIndex[node] = row;
+		}
+		shared.delete(row);
+		if (shared.isEmpty())
+			sharedIds.remove(node);
 	}
 
 	/**
 	 * Searches for the person with the specified id
 	 * 
 	 * @param id the id to search for
-	 * @return the person with the id, returns null if not found
-	 */
-	private Person getPerson(String id) {
-		Iterator<Person> person = people.iterator();
-		while (person.hasNext()) {
-			Person current = person.next();
-			if (current.getId().equalsIgnoreCase(id)) {
-				return current;
-			}
-		}
-		return null;
+	 * @return the row of the person with the id, returns -1 if not found
+	 */
+	private int getPerson(String id) {
+		int number = ids.find(id);
+		return number < 0 || number >= personIndex.length ? -1 : personIndex[number];
+	}
+
+	/**
+	 * @param id a person ID, may be null
+	 * @return the number of the ID in {@link #links}, or {@link LinkGraph#NONE}
+	 *         for null
+	 */
+	private int number(String id) {
+		if (id == null)
+			return LinkGraph.NONE;
+		allocator.seen(id);
+		return ids.intern(id);
+	}
+
+	/**
+	 * Normalises an ID so lookups are case insensitive
+	 * 
+	 * @param id the ID to normalise
+	 * @return the key of the ID in {@link #ids} and {@link #familyIndex}
+	 */
+	static String key(String id) {
+		return id.toLowerCase(Locale.ROOT);
 	}
 
 	/**
 	 * Creates a new family in record
 	 * 
 	 * @param ID of new family
-	 * @throws Exception if family already exists
+	 * @throws Exception if family already exists, or the ID cannot be written to a
+	 *                   log
 	 */
 	public void createNewFamily(String ID) throws Exception {
-		if (getFamily(ID) != null)
-			throw new Exception("Cannot create new Family: " + ID + " When Family Already Exists");
-		Family newFamily = new Family(ID);
-		family.add(newFamily);
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			if (ID == null || ID.isEmpty() || ID.startsWith("#") || ID.contains(","))
+				throw new Exception("Family ID cannot be empty, start with # or contain a comma");
+			if (getFamily(ID) != null)
+				throw new Exception("Cannot create new Family: " + ID + " When Family Already Exists");
+			Family newFamily = new Family(ID, people);
+			family.add(newFamily);
+			familyIndex.put(key(ID), newFamily);
+			if (journal != null)
+				journal.createFamily(ID);
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.CREATE_FAMILY, start);
+		}
 	}
 
 	/**
@@ -208,10 +771,64 @@ public class FamilyManager {
 	 * @throws Exception if family does not exist
 	 */
 	public void removeFamily(String ID) throws Exception {
-		Family removal = getFamily(ID);
-		if (removal == null)
-			throw new Exception("Cannot remove non-existing Family: " + ID);
-		family.remove(removal);
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			Family removal = getFamily(ID);
+			if (removal == null)
+				throw new Exception("Cannot remove non-existing Family: " + ID);
+			family.remove(removal);
+			familyIndex.remove(key(ID));
+			for (int i = 0; i < removal.size; i++) {
+				String key = key(people.id(removal.people[i]));
+				Set<Family> held = memberships.get(key);
+				if (held != null && held.remove(removal) && held.isEmpty())
+					memberships.remove(key);
+			}
+			if (journal != null)
+				journal.removeFamily(ID);
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.REMOVE_FAMILY, start);
+		}
+	}
+
+	/**
+	 * Adds the person to the family and records the membership in
+	 * {@link #memberships}
+	 * 
+	 * @param fam the family to add to
+	 * @param row the row of the person to add
+	 */
+	private void addMember(Family fam, int row) {
+		fam.add(row);
+		memberships.computeIfAbsent(key(people.id(row)), k -> new LinkedHashSet<Family>()).add(fam);
+	}
+
+	/**
+	 * Retrieves the IDs of every family the specified person belongs to
+	 * 
+	 * @param personID the ID of the person
+	 * @return the family IDs in the order the person joined them; empty if the
+	 *         person is in no family
+	 */
+	public List<String> getFamiliesOf(String personID) {
+		long start = metrics.start();
+		long stamp = lockRead();
+		try {
+			List<String> familyIDs = new ArrayList<String>();
+			if (personID == null)
+				return familyIDs;
+			Set<Family> held = memberships.get(key(personID));
+			if (held != null) {
+				for (Family fam : held)
+					familyIDs.add(fam.getId());
+			}
+			return familyIDs;
+		} finally {
+			unlockRead(stamp);
+			metrics.stop(Operation.FAMILIES_OF, start);
+		}
 	}
 
 	/**
@@ -222,14 +839,9 @@ public class FamilyManager {
 	 * @return the family found or null if no family found
 	 */
 	private Family getFamily(String familyID) {
-		Iterator<Family> iter = family.iterator();
-		while (iter.hasNext()) {
-			Family current = iter.next();
-			if (current.getId().equalsIgnoreCase(familyID)) {
-				return current;
-			}
-		}
-		return null;
+		if (familyID == null)
+			return null;
+		return familyIndex.get(key(familyID));
 	}
 
 	/**
@@ -244,21 +856,69 @@ public class FamilyManager {
 	 * @throws Exception if name or sex is null
 	 */
 	public String addPerson(String name, String lastname, Date birth, Date death, Sex sex) throws Exception {
-		String newID = Integer.toString(people.size());
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			if (name == null)
+				throw new Exception("Name cannot be null");
+			if (sex == null)
+				throw new Exception("Sex cannot be null");
+
+			String newID = allocator.next();
+			insertPerson(newID, name, lastname, PersonStore.millis(birth), PersonStore.millis(death), sex);
+			if (journal != null)
+				journal.addPerson(newID, name, lastname, PersonStore.millis(birth), PersonStore.millis(death), sex);
 
-		if (name == null)
-			throw new Exception("Name cannot be null");
-		if (sex == null)
-			throw new Exception("Sex cannot be null");
+			return newID;
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.ADD_PERSON, start);
+		}
+	}
 
-		Person newPerson = new Person(newID, name, sex);
-		newPerson.lastName = lastname;
-		newPerson.birthday = birth;
-		newPerson.deathDate = death;
+	/**
+	 * Adds a new person under an ID reserved with {@link #reserveIds(int)}, so
+	 * loaders can number the people they import without waiting for each other
+	 * 
+	 * @param id       the new Person's ID
+	 * @param name     Person's first name
+	 * @param lastname Person's last name
+	 * @param birth    Person's date of birth
+	 * @param death    Person's date of death (can be null)
+	 * @param sex      Person's sex (cannot be null)
+	 * @throws Exception if the ID is already in use, or name or sex is null
+	 */
+	public void addPerson(String id, String name, String lastname, Date birth, Date death, Sex sex) throws Exception {
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			if (name == null)
+				throw new Exception("Name cannot be null");
+			if (sex == null)
+				throw new Exception("Sex cannot be null");
+			if (ids.find(id) >= 0)
+				throw new Exception("ID: " + id + " is already in use");
 
-		people.add(newPerson);
+			insertPerson(id, name, lastname, PersonStore.millis(birth), PersonStore.millis(death), sex);
+			if (journal != null)
+				journal.addPerson(id, name, lastname, PersonStore.millis(birth), PersonStore.millis(death), sex);
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.ADD_PERSON, start);
+		}
+	}
 
-		return newID;
+	/**
+	 * Reserves a block of IDs that no other call will hand out, for
+	 * {@link #addPerson(String, String, String, Date, Date, Sex)}. Takes no lock,
+	 * so loaders on several threads can each reserve their own. IDs left unused
+	 * are skipped; they are not handed out again once the manager is written.
+	 * 
+	 * @param count IDs to reserve
+	 * @return the reserved IDs
+	 */
+	public IdAllocator.Block reserveIds(int count) {
+		return allocator.reserve(count);
 	}
 
 	/**
@@ -269,15 +929,24 @@ public class FamilyManager {
 	 * @throws Exception if family id or person id is not valid
 	 */
 	public void addPersonTo(String familyID, String personID) throws Exception {
-		Family fam = getFamily(familyID);
-		if (fam == null)
-			throw new Exception("Family under ID: " + familyID + " does not exist.");
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			Family fam = getFamily(familyID);
+			if (fam == null)
+				throw new Exception("Family under ID: " + familyID + " does not exist.");
 
-		Person person = getPerson(personID);
-		if (person == null)
-			throw new Exception("Person under ID: " + personID + "does not exist");
+			int row = getPerson(personID);
+			if (row < 0)
+				throw new Exception("Person under ID: " + personID + "does not exist");
 
-		fam.people.add(person);
+			addMember(fam, row);
+			if (journal != null)
+				journal.addPersonTo(familyID, personID);
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.ADD_PERSON_TO, start);
+		}
 	}
 
 	/**
@@ -286,46 +955,380 @@ public class FamilyManager {
 	 * @param motherID the mother id
 	 * @param FatherID the father id
 	 * @param personID the child id
-	 * @throws Exception if any of the ids are invalid or child has parents already
+	 * @throws Exception if any of the ids are invalid, child has parents already
+	 *                   or the child is an ancestor of either parent
 	 */
 	public void addChild(String motherID, String fatherID, String personID) throws Exception {
-		Person person = getPerson(personID);
-		if (person == null)
-			throw new Exception("Person under ID: " + personID + "does not exist");
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			if (getPerson(personID) < 0)
+				throw new Exception("Person under ID: " + personID + "does not exist");
+			int person = ids.find(personID);
 
-		Person father = getPerson(fatherID);
-		if (father == null)
-			throw new Exception("Person under ID: " + fatherID + "does not exist");
+			if (getPerson(fatherID) < 0)
+				throw new Exception("Person under ID: " + fatherID + "does not exist");
+			int father = ids.find(fatherID);
 
-		Person mother = getPerson(motherID);
-		if (mother == null)
-			throw new Exception("Person under ID: " + motherID + "does not exist");
+			if (getPerson(motherID) < 0)
+				throw new Exception("Person under ID: " + motherID + "does not exist");
+			int mother = ids.find(motherID);
 
-		if (person.parentIDs[0] != null) {
-			throw new Exception(
-					"Person under ID: " + personID + " already has existing mother: " + person.parentIDs[0]);
-		}
+			if (links.mother(person) != LinkGraph.NONE) {
+				throw new Exception("Person under ID: " + personID + " already has existing mother: "
+						+ links.parentIDs(person)[0]);
+			}
 
-		if (person.parentIDs[1] != null) {
-			throw new Exception(
-					"Person under ID: " + personID + " already has existing father: " + person.parentIDs[1]);
-		}
+			if (links.father(person) != LinkGraph.NONE) {
+				throw new Exception("Person under ID: " + personID + " already has existing father: "
+						+ links.parentIDs(person)[1]);
+			}
 
-		mother.childrenIDs.add(personID);
-		father.childrenIDs.add(personID);
+			if (!topology.fit(mother, person))
+				throw new Exception("Person under ID: " + personID + " is an ancestor of " + motherID);
+			if (!topology.fit(father, person))
+				throw new Exception("Person under ID: " + personID + " is an ancestor of " + fatherID);
 
-		person.parentIDs[0] = motherID;
-		person.parentIDs[1] = fatherID;
-	}
+			links.addChild(mother, person);
+			if (father != mother)
+				links.addChild(father, person);
 
-	/**
+			links.setParents(person, mother, father);
+			kinship.changed(person);
+			if (journal != null)
+				journal.addChild(motherID, fatherID, personID);
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.ADD_CHILD, start);
+		}
+	}
+
+	/**
+	 * Walks up from the specified person, visiting parents, then grandparents,
+	 * and so on, a generation at a time. Each ancestor is visited once, at the
+	 * nearest generation.
+	 * 
+	 * @param personID    the person to start from
+	 * @param generations how many generations to go up
+	 * @param visitor     receives each ancestor, after the walk
+	 * @return count of ancestors visited
+	 * @throws Exception if no person matches the specified ID
+	 */
+	public int visitAncestors(String personID, int generations, TreeVisitor visitor) throws Exception {
+		return visit(personID, generations, true, visitor);
+	}
+
+	/**
+	 * Walks down from the specified person, visiting children, then
+	 * grandchildren, and so on, a generation at a time. Each descendant is
+	 * visited once, at the nearest generation.
+	 * 
+	 * @param personID    the person to start from
+	 * @param generations how many generations to go down
+	 * @param visitor     receives each descendant, after the walk
+	 * @return count of descendants visited
+	 * @throws Exception if no person matches the specified ID
+	 */
+	public int visitDescendants(String personID, int generations, TreeVisitor visitor) throws Exception {
+		return visit(personID, generations, false, visitor);
+	}
+
+	/**
+	 * Walks the tree under the read lock, copying each relative found, and hands
+	 * the copies to the visitor once the lock is released, so the visitor may
+	 * call back into the manager and a slow one holds up no edit
+	 * 
+	 * @param up true to walk to ancestors, false to descendants
+	 * @return count of relatives visited
+	 */
+	private int visit(String personID, int generations, boolean up, TreeVisitor visitor) throws Exception {
+		long start = metrics.start();
+		Rows found = new Rows();
+		List<String> relativeIDs = new ArrayList<String>();
+		List<Person> relatives = new ArrayList<Person>();
+		long stamp = lockRead();
+		try {
+			Lineage.Visitor collect = (node, generation) -> {
+				int row = node < personIndex.length ? personIndex[node] : -1;
+				found.add(generation);
+				relativeIDs.add(row < 0 ? ids.name(node) : people.id(row));
+				relatives.add(row < 0 ? null : copy(row));
+				return true;
+			};
+			if (up)
+				lineage.get().ancestors(node(personID), generations, collect);
+			else
+				lineage.get().descendants(node(personID), generations, collect);
+		} finally {
+			unlockRead(stamp);
+			metrics.stop(up ? Operation.VISIT_ANCESTORS : Operation.VISIT_DESCENDANTS, start);
+		}
+		int count = 0;
+		while (count < found.size()) {
+			int i = count++;
+			if (!visitor.visit(found.get(i), relativeIDs.get(i), relatives.get(i)))
+				break;
+		}
+		return count;
+	}
+
+	/**
+	 * Works out how the relative is related to the person through their nearest
+	 * common ancestors, looking up to {@link #RELATIONSHIP_GENERATIONS}
+	 * generations back. Ancestor tables are cached and only rebuilt where
+	 * {@link #addChild(String, String, String)} changes them, so relating many
+	 * pairs costs little more per pair than comparing two short lists.
+	 * 
+	 * @param personID   the person the relationship is seen from
+	 * @param relativeID the relative
+	 * @return the relationship, which is not {@link Relationship#isRelated()
+	 *         related} if no common ancestor is close enough
+	 * @throws Exception if either ID matches no person
+	 */
+	public Relationship relate(String personID, String relativeID) throws Exception {
+		long start = metrics.start();
+		long stamp = lockRead();
+		try {
+			int[] nearest = kinship.nearest(node(personID), node(relativeID));
+			List<String> ancestorIDs = new ArrayList<String>(nearest.length - 2);
+			for (int i = 2; i < nearest.length; i++) {
+				int row = nearest[i] < personIndex.length ? personIndex[nearest[i]] : -1;
+				ancestorIDs.add(row < 0 ? ids.name(nearest[i]) : people.id(row));
+			}
+			return new Relationship(personID, relativeID, ancestorIDs, nearest[0], nearest[1]);
+		} finally {
+			unlockRead(stamp);
+			metrics.stop(Operation.RELATE, start);
+		}
+	}
+
+	/**
+	 * @return the number of the ID of the specified person
+	 * @throws Exception if no person matches the specified ID
+	 */
+	private int node(String personID) throws Exception {
+		if (getPerson(personID) < 0)
+			throw new Exception("Person under ID: " + personID + " does not exist");
+		return ids.find(personID);
+	}
+
+	/**
+	 * Finds everyone with the specified first name, ignoring case and accents.
+	 * Like the other searches, it is answered from an index kept up to date by
+	 * {@link #editPerson(String, String, String, Date, Date, Sex)}.
+	 * 
+	 * @param name the first name
+	 * @return copies of the people found, in the order they were added
+	 */
+	public List<Person> findByFirstName(String name) {
+		long start = metrics.start();
+		long stamp = lockRead();
+		try {
+			return persons(index.firstName(name));
+		} finally {
+			unlockRead(stamp);
+			metrics.stop(Operation.FIND_BY_NAME, start);
+		}
+	}
+
+	/**
+	 * Finds everyone with the specified last name, ignoring case and accents
+	 * 
+	 * @param name the last name
+	 * @return copies of the people found, in the order they were added
+	 */
+	public List<Person> findByLastName(String name) {
+		long start = metrics.start();
+		long stamp = lockRead();
+		try {
+			return persons(index.lastName(name));
+		} finally {
+			unlockRead(stamp);
+			metrics.stop(Operation.FIND_BY_NAME, start);
+		}
+	}
+
+	/**
+	 * Finds everyone whose first or last name is spelled like the specified
+	 * name, ignoring case and accents, so "Quinterro" finds "Quintero". Names
+	 * are looked up by their trigrams, then checked by edit distance: none for
+	 * names of up to two letters, one for up to five, and two for longer ones.
+	 * 
+	 * @param name  the first or last name to look for
+	 * @param limit most people to return
+	 * @return copies of the people found, those with the nearest names first
+	 */
+	public List<Person> searchName(String name, int limit) {
+		long start = metrics.start();
+		long stamp = lockRead();
+		try {
+			return persons(index.similar(name, limit));
+		} finally {
+			unlockRead(stamp);
+			metrics.stop(Operation.SEARCH_NAME, start);
+		}
+	}
+
+	/**
+	 * Finds everyone born within the specified dates, inclusive
+	 * 
+	 * @param from the earliest birth date
+	 * @param to   the latest birth date
+	 * @return copies of the people found, in order of birth
+	 */
+	public List<Person> findBornBetween(Date from, Date to) {
+		long start = metrics.start();
+		long stamp = lockRead();
+		try {
+			return persons(index.bornBetween(from.getTime(), to.getTime()));
+		} finally {
+			unlockRead(stamp);
+			metrics.stop(Operation.FIND_BY_DATE, start);
+		}
+	}
+
+	/**
+	 * Finds everyone who died within the specified dates, inclusive
+	 * 
+	 * @param from the earliest death date
+	 * @param to   the latest death date
+	 * @return copies of the people found, in order of death
+	 */
+	public List<Person> findDiedBetween(Date from, Date to) {
+		long start = metrics.start();
+		long stamp = lockRead();
+		try {
+			return persons(index.diedBetween(from.getTime(), to.getTime()));
+		} finally {
+			unlockRead(stamp);
+			metrics.stop(Operation.FIND_BY_DATE, start);
+		}
+	}
+
+	/**
+	 * Finds everyone alive on the specified date: born on or before it and not
+	 * dead by it. People with no birth date are left out; those with no death
+	 * date are taken to be alive.
+	 * 
+	 * @param date the date
+	 * @return copies of the people found, in order of birth
+	 */
+	public List<Person> findAliveOn(Date date) {
+		long start = metrics.start();
+		long stamp = lockRead();
+		try {
+			return persons(index.aliveOn(date.getTime()));
+		} finally {
+			unlockRead(stamp);
+			metrics.stop(Operation.FIND_BY_DATE, start);
+		}
+	}
+
+	/**
+	 * Finds records that may be the same person, such as someone entered under
+	 * several families, by comparing records with the same last name and year of
+	 * birth on every core. Each record is paired with the earlier record it is
+	 * most like. The records are copied under the lock and compared without it;
+	 * pairs whose records were removed meanwhile are left out.
+	 * 
+	 * @param minScore lowest score, from 0 to 1, of the pairs returned
+	 * @param limit    most pairs returned
+	 * @return the pairs found, most alike first
+	 * @see DuplicateFinder
+	 */
+	public List<MergeCandidate> findDuplicates(double minScore, int limit) {
+		long start = metrics.start();
+		try {
+			DuplicateFinder finder;
+			long stamp = lockRead();
+			try {
+				finder = new DuplicateFinder(people, ForkJoinPool.commonPool());
+			} finally {
+				unlockRead(stamp);
+			}
+			List<DuplicateFinder.Match> matches = finder.find(minScore, limit);
+			stamp = lockRead();
+			try {
+				List<MergeCandidate> candidates = new ArrayList<MergeCandidate>(matches.size());
+				for (DuplicateFinder.Match match : matches) {
+					if (people.next(match.first - 1) == match.first && people.next(match.second - 1) == match.second)
+						candidates.add(new MergeCandidate(copy(match.first), copy(match.second),
+								match.score));
+				}
+				return candidates;
+			} finally {
+				unlockRead(stamp);
+			}
+		} finally {
+			metrics.stop(Operation.FIND_DUPLICATES, start);
+		}
+	}
+
+	/**
+	 * Checks every person, link and family on every core for dates out of
+	 * order, parents of the wrong sex or age, links to IDs no one holds or that
+	 * only one side records, people in no family and empty families. Edits wait
+	 * until the check is done; the violations are then handed to the consumer
+	 * on the calling thread, in the same order every time, so it may call back
+	 * into the manager.
+	 * 
+	 * @param consumer receives each violation
+	 * @return count of violations found
+	 * @see Validator
+	 */
+	public int validate(Consumer<Violation> consumer) {
+		long start = metrics.start();
+		List<Violation> found = new ArrayList<Violation>();
+		long stamp = lockRead();
+		try {
+			new Validator(people, links, ids, personIndex, memberships, family, ForkJoinPool.commonPool())
+					.check(found::add);
+		} finally {
+			unlockRead(stamp);
+			metrics.stop(Operation.VALIDATE, start);
+		}
+		for (Violation violation : found)
+			consumer.accept(violation);
+		return found.size();
+	}
+
+	/**
+	 * @return a copy of the person in each of the rows
+	 */
+	private List<Person> persons(int[] rows) {
+		List<Person> found = new ArrayList<Person>(rows.length);
+		for (int row : rows)
+			found.add(copy(row));
+		return found;
+	}
+
+	/**
+	 * @return a copy of the person in the row, with their parents and children
+	 */
+	private Person copy(int row) {
+		int node = people.node(row);
+		List<String> children = new ArrayList<String>();
+		for (int edge = links.firstEdge(node); edge != LinkGraph.NONE; edge = links.nextEdge(edge))
+			children.add(ids.name(links.target(edge)));
+		return new Person.Copy(people.id(row), people.firstName(row), people.lastName(row), people.sex(row),
+				people.birth(row), people.death(row), links.parentIDs(node), children);
+	}
+
+	/**
 	 * Determines if this {@code FamilyManager} has this family id.
 	 * 
 	 * @param ID the specified ID
 	 * @return true if the matching ID has a family associated with it.
 	 */
 	public boolean hasFamily(String ID) {
-		return (getFamily(ID) != null);
+		long start = metrics.start();
+		long stamp = lockRead();
+		try {
+			return (getFamily(ID) != null);
+		} finally {
+			unlockRead(stamp);
+			metrics.stop(Operation.HAS_FAMILY, start);
+		}
 	}
 
 	/**
@@ -335,7 +1338,34 @@ public class FamilyManager {
 	 * @return true if matching id has a person associated with it.
 	 */
 	public boolean hasPerson(String ID) {
-		return (getPerson(ID) != null);
+		long start = metrics.start();
+		try {
+			return holds(ID);
+		} finally {
+			metrics.stop(Operation.HAS_PERSON, start);
+		}
+	}
+
+	/**
+	 * @return true if a person has the ID
+	 */
+	private boolean holds(String ID) {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				boolean found = getPerson(ID) >= 0;
+				if (lock.validate(stamp))
+					return found;
+			} catch (RuntimeException e) {
+				// read while an edit moved the tables; try again under the lock
+			}
+		}
+		stamp = lockRead();
+		try {
+			return getPerson(ID) >= 0;
+		} finally {
+			unlockRead(stamp);
+		}
 	}
 
 	/**
@@ -350,40 +1380,432 @@ public class FamilyManager {
 	 * @throws Exception if person does not exist
 	 */
 	public void editPerson(String iD, String name, String lastname, Date birth, Date death, Sex sex) throws Exception {
-		if (iD == null)
-			throw new NullPointerException("No ID Given");
-		for (Person person : people) {
-			if (person.getId().equals(iD)) {
-				if (name != null)
-					person.firstName = name;
-				if (lastname != null)
-					person.lastName = lastname;
-				if (birth != null)
-					person.birthday = birth;
-				if (death != null)
-					person.deathDate = death;
-				if (sex != null)
-					person.sex = sex;
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			if (iD == null)
+				throw new NullPointerException("No ID Given");
+			int row = getPerson(iD);
+			if (row < 0)
+				throw new Exception("Person on ID: " + iD + " does not exist");
+			index.remove(row);
+			if (name != null)
+				people.setFirstName(row, name);
+			if (lastname != null)
+				people.setLastName(row, lastname);
+			if (birth != null)
+				people.setBirth(row, birth.getTime());
+			if (death != null)
+				people.setDeath(row, death.getTime());
+			if (sex != null)
+				people.setSex(row, sex);
+			index.add(row);
+			if (journal != null)
+				journal.editPerson(iD, name, lastname, PersonStore.millis(birth), PersonStore.millis(death), sex);
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.EDIT_PERSON, start);
+		}
+	}
+
+	/**
+	 * Runs several edits while holding the lock once, so other threads see none
+	 * of them until all are done, and no edit of theirs lands in between
+	 *
+	 * @param edits calls to this manager
+	 */
+	public void batch(Runnable edits) {
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			edits.run();
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.BATCH, start);
+		}
+	}
+
+	/**
+	 * Starts journaling edits to the specified family log. Edits already in its
+	 * journal, {@code <base>.journal}, are replayed on top of what was read; any
+	 * that fail are listed in {@link #getReadProblems()}.
+	 * 
+	 * @param base the family log that was read
+	 * @throws IOException if the journal cannot be read or created
+	 * @see Journal
+	 */
+	public void openJournal(File base) throws IOException {
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			if (journal != null)
+				throw new IllegalStateException("Journal already open: " + journal.getFile());
+			Journal opened = Journal.open(new File(base.getPath() + ".journal"), base, new Replay(), readProblems::add);
+			journal = opened;
+			journalBase = base;
+			compactIfNeeded();
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.OPEN_JOURNAL, start);
+		}
+	}
+
+	/**
+	 * Makes every journaled edit durable with one fsync, and folds the journal
+	 * back into its base file once it has grown large. Only writing out the
+	 * edits takes the lock; the fsync runs after it is let go, so edits and
+	 * queries carry on meanwhile.
+	 * 
+	 * @throws IOException if the journal or base file cannot be written
+	 */
+	public void commit() throws IOException {
+		long start = metrics.start();
+		try {
+			Journal written;
+			long stamp = lockWrite();
+			try {
+				if (journal == null || !journal.writePending())
+					return;
+				written = journal;
+			} finally {
+				unlockWrite(stamp);
+			}
+			// resetting and closing the journal hold output too, so neither runs
+			// during the fsync
+			synchronized (output) {
+				if (written == journal)
+					written.force();
+			}
+			stamp = lockWrite();
+			try {
+				if (journal != null)
+					compactIfNeeded();
+			} finally {
+				unlockWrite(stamp);
+			}
+		} finally {
+			metrics.stop(Operation.COMMIT, start);
+		}
+	}
+
+	/**
+	 * Rewrites the base file, and its snapshot, with every edit and empties the
+	 * journal
+	 * 
+	 * @throws IOException if the base file cannot be written
+	 */
+	public void compact() throws IOException {
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			if (journal == null)
+				return;
+			write(journalBase);
+			writeSnapshot(journalBase);
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.COMPACT, start);
+		}
+	}
+
+	/**
+	 * Commits outstanding edits and stops journaling
+	 * 
+	 * @throws IOException if the journal cannot be written
+	 */
+	public void closeJournal() throws IOException {
+		long start = metrics.start();
+		long stamp = lockWrite();
+		try {
+			if (journal == null)
+				return;
+			try {
+				commit();
+			} finally {
+				synchronized (output) {
+					journal.close();
+					journal = null;
+				}
+			}
+		} finally {
+			unlockWrite(stamp);
+			metrics.stop(Operation.CLOSE_JOURNAL, start);
+		}
+	}
+
+	/**
+	 * Compacts when the journal is large next to its base file, so rewrites stay
+	 * rare while replay stays cheap
+	 */
+	private void compactIfNeeded() throws IOException {
+		if (journal.length() > Math.max(COMPACT_MIN, journalBase.length() / 2))
+			compact();
+	}
+
+	/**
+	 * Takes {@link #lock} for writing, unless this thread holds it already
+	 * 
+	 * @return the stamp to pass to {@link #unlockWrite(long)}
+	 */
+	private long lockWrite() {
+		if (writer == Thread.currentThread())
+			return 0;
+		long stamp = lock.writeLock();
+		writer = Thread.currentThread();
+		return stamp;
+	}
+
+	private void unlockWrite(long stamp) {
+		if (stamp == 0)
+			return;
+		writer = null;
+		lock.unlockWrite(stamp);
+	}
+
+	/**
+	 * Takes {@link #lock} for reading, unless this thread holds it for writing
+	 * 
+	 * @return the stamp to pass to {@link #unlockRead(long)}
+	 */
+	private long lockRead() {
+		return writer == Thread.currentThread() ? 0 : lock.readLock();
+	}
+
+	private void unlockRead(long stamp) {
+		if (stamp != 0)
+			lock.unlockRead(stamp);
+	}
+
+	/**
+	 * Applies replayed journal edits without journaling them again
+	 */
+	private class Replay implements Journal.Target {
+
+		@Override
+		public void createFamily(String familyID) throws Exception {
+			createNewFamily(familyID);
+		}
+
+		@Override
+		public void removeFamily(String familyID) throws Exception {
+			FamilyManager.this.removeFamily(familyID);
+		}
+
+		@Override
+		public void addPerson(String personID, String firstName, String lastName, long birth, long death, Sex sex) {
+			insertPerson(personID, firstName, lastName, birth, death, sex);
+		}
+
+		@Override
+		public void addPersonTo(String familyID, String personID) throws Exception {
+			FamilyManager.this.addPersonTo(familyID, personID);
+		}
+
+		@Override
+		public void addChild(String motherID, String fatherID, String personID) throws Exception {
+			FamilyManager.this.addChild(motherID, fatherID, personID);
+		}
+
+		@Override
+		public void editPerson(String personID, String firstName, String lastName, long birth, long death, Sex sex)
+				throws Exception {
+			FamilyManager.this.editPerson(personID, firstName, lastName, PersonStore.date(birth),
+					PersonStore.date(death), sex);
+		}
+
+		@Override
+		public void removePerson(String personID) throws Exception {
+			FamilyManager.this.removePerson(personID);
+		}
+	}
+
+	/**
+	 * @return the timings of this manager's operations
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public int getPeopleCount() {
+		long stamp = lockRead();
+		try {
+			return people.size();
+		} finally {
+			unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public int getFamilyCount() {
+		long stamp = lockRead();
+		try {
+			return family.size();
+		} finally {
+			unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public int getLinkCount() {
+		long stamp = lockRead();
+		try {
+			return links.links();
+		} finally {
+			unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public long getIndexBytes() {
+		long stamp = lockRead();
+		try {
+			return index.bytes();
+		} finally {
+			unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public long getSavedRecords() {
+		return savedRecords;
+	}
+
+	@Override
+	public long getSavedBytes() {
+		return savedBytes;
+	}
+
+	@Override
+	public boolean isRecording() {
+		return metrics.isRecording();
+	}
+
+	@Override
+	public void setRecording(boolean recording) {
+		metrics.setRecording(recording);
+	}
+
+	@Override
+	public List<OperationStats> getOperations() {
+		return metrics.getOperations();
+	}
+
+	@Override
+	public void resetMetrics() {
+		metrics.reset();
+	}
+
+	/**
+	 * Publishes this manager on the platform MBean server, as
+	 * {@code people:type=FamilyManager,name=<name>}
+	 * 
+	 * @param name tells managers apart
+	 * @return the name it is published under
+	 * @throws JMException if it cannot be published, such as when the name is
+	 *                     taken
+	 */
+	public ObjectName registerMBean(String name) throws JMException {
+		ObjectName objectName = new ObjectName("people:type=FamilyManager,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	/**
+	 * Prints the sizes of this manager and the timings of its operations as one
+	 * line, periodically, on a daemon thread
+	 * 
+	 * @param out      where the lines are printed
+	 * @param interval milliseconds between lines
+	 * @return the printing thread; interrupt it to stop
+	 */
+	public Thread logMetrics(PrintStream out, long interval) {
+		return metrics.log(out, interval, () -> "people=" + getPeopleCount() + " families=" + getFamilyCount()
+				+ " links=" + getLinkCount() + " indexBytes=" + getIndexBytes());
+	}
+
+	/**
+	 * Writes families and then people, one record to a line, starting at the
+	 * cursor. Records are built a chunk at a time under the lock and written to
+	 * the output after it is released, so however many there are, memory stays
+	 * at one chunk, the first line shows at once, and a slow output never holds
+	 * up edits. Records added or removed between calls may be missed or skipped,
+	 * but no record is written twice.
+	 *
+	 * @param output where the records are written
+	 * @param cursor {@link #FIRST}, or a cursor returned by the previous call
+	 * @param limit  most records to write
+	 * @return the cursor of the next record, or {@link #END} once all are written
+	 * @throws IOException if the output cannot be written
+	 */
+	public long render(Appendable output, long cursor, int limit) throws IOException {
+		long start = metrics.start();
+		StringBuilder chunk = new StringBuilder(RENDER_CHUNK * 64);
+		while (limit > 0 && cursor != END) {
+			int records = Math.min(limit, RENDER_CHUNK);
+			long stamp = lockRead();
+			try {
+				for (int i = 0; i < records && (cursor = seek(cursor)) != END; i++)
+					render(chunk, cursor++).append('\n');
+				cursor = seek(cursor);
+			} finally {
+				unlockRead(stamp);
 			}
+			output.append(chunk);
+			chunk.setLength(0);
+			limit -= records;
+		}
+		metrics.stop(Operation.RENDER, start);
+		return cursor;
+	}
+
+	/**
+	 * Writes the record at the cursor
+	 * @return the builder
+	 */
+	private StringBuilder render(StringBuilder output, long cursor) {
+		if (cursor < PEOPLE)
+			return family.get((int) cursor).append(output);
+		int row = (int) (cursor - PEOPLE);
+		return Person.append(output, people.firstName(row), people.lastName(row), people.id(row), people.sex(row));
+	}
+
+	/**
+	 * @return the cursor of the record at or after the cursor, or {@link #END}
+	 */
+	private long seek(long cursor) {
+		if (cursor < PEOPLE) {
+			if (cursor < family.size())
+				return cursor;
+			cursor = PEOPLE;
 		}
-		throw new Exception("Person on ID: " + iD + " does not exist");
+		int row = people.next((int) (cursor - PEOPLE) - 1);
+		return row < 0 ? END : PEOPLE + row;
 	}
 
 	@Override
 	public String toString() {
-		String output = "Family\n";
-		for (Family fam : family)
-			output = output + "\n" + fam;
-		for (Person person : people)
-			output = output + "\n" + person;
-		return output;
+		StringBuilder output = new StringBuilder("Family\n\n");
+		try {
+			render(output, FIRST, Integer.MAX_VALUE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		// the records are separated by line breaks rather than ended by them
+		output.setLength(output.length() - 1);
+		return output.toString();
 	}
 
 	/**
 	 * @return string value of {@link #family}
 	 */
 	public String printFamily() {
-		return family.toString();
+		long stamp = lockRead();
+		try {
+			return family.toString();
+		} finally {
+			unlockRead(stamp);
+		}
 	}
 
 	/**
@@ -393,10 +1815,15 @@ public class FamilyManager {
 	 * @throws Exception
 	 */
 	public String printFamily(String iD) throws Exception {
-		Family fam = getFamily(iD);
-		if(fam == null)
-			throw new Exception("Invalid ID");
-		return fam.toString();
+		long stamp = lockRead();
+		try {
+			Family fam = getFamily(iD);
+			if(fam == null)
+				throw new Exception("Invalid ID");
+			return fam.toString();
+		} finally {
+			unlockRead(stamp);
+		}
 	}
 
 }
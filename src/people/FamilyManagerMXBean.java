@@ -0,0 +1,61 @@
+package people;
+
+import java.util.List;
+
+/**
+ * What a {@link FamilyManager} publishes over JMX once
+ * {@link FamilyManager#registerMBean(String) registered}: its sizes, the last
+ * file it wrote and the timings of its operations.
+ */
+public interface FamilyManagerMXBean {
+
+	/**
+	 * @return count of people held
+	 */
+	int getPeopleCount();
+
+	/**
+	 * @return count of families held
+	 */
+	int getFamilyCount();
+
+	/**
+	 * @return count of links from a parent to a child
+	 */
+	int getLinkCount();
+
+	/**
+	 * @return estimated bytes of heap the name and date indexes take
+	 */
+	long getIndexBytes();
+
+	/**
+	 * @return person records in the last family log written
+	 */
+	long getSavedRecords();
+
+	/**
+	 * @return bytes in the last family log written
+	 */
+	long getSavedBytes();
+
+	/**
+	 * @return true if operations are being timed
+	 */
+	boolean isRecording();
+
+	/**
+	 * Starts or stops timing operations
+	 */
+	void setRecording(boolean recording);
+
+	/**
+	 * @return statistics of every operation called since timings were reset
+	 */
+	List<OperationStats> getOperations();
+
+	/**
+	 * Forgets every timing
+	 */
+	void resetMetrics();
+}
@@ -0,0 +1,129 @@
+package people;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out person IDs that no one holds: decimal numbers counting up from
+ * one past the largest numeric ID {@link #seen(String) seen}. IDs are never
+ * handed out twice, even after the person holding one is removed, because
+ * links belong to IDs and would otherwise pass to the new person.
+ * <p>
+ * Handing out an ID is one atomic add, so threads never wait for each other or
+ * for a lock. Bulk loaders can {@link #reserve(int) reserve} a block of IDs
+ * with one add and then take from it without touching the counter at all.
+ */
+public final class IdAllocator {
+
+	/**
+	 * Digits of the longest ID counted; longer ones cannot collide with any
+	 * handed out
+	 */
+	private static final int MAX_DIGITS = 18;
+
+	private final AtomicLong next = new AtomicLong();
+
+	/**
+	 * A run of consecutive IDs reserved for one loader. Not thread safe: each
+	 * thread takes its own.
+	 */
+	public static final class Block {
+
+		private long next;
+		private final long end;
+
+		private Block(long first, int count) {
+			next = first;
+			end = first + count;
+		}
+
+		/**
+		 * @return true if IDs remain in the block
+		 */
+		public boolean hasNext() {
+			return next < end;
+		}
+
+		/**
+		 * @return the next ID of the block
+		 * @throws IllegalStateException if the block is used up
+		 */
+		public String next() {
+			if (next == end)
+				throw new IllegalStateException("Block of IDs used up");
+			return Long.toString(next++);
+		}
+
+		/**
+		 * @return IDs left in the block
+		 */
+		public int remaining() {
+			return (int) (end - next);
+		}
+	}
+
+	/**
+	 * @return a new ID
+	 */
+	public String next() {
+		return Long.toString(next.getAndIncrement());
+	}
+
+	/**
+	 * Reserves consecutive IDs that {@link #next()} will never hand out
+	 *
+	 * @param count IDs to reserve
+	 * @return the reserved IDs
+	 */
+	public Block reserve(int count) {
+		if (count < 0)
+			throw new IllegalArgumentException("Negative count: " + count);
+		return new Block(next.getAndAdd(count), count);
+	}
+
+	/**
+	 * Makes sure the ID is never handed out. Only IDs written the way
+	 * {@link #next()} writes them, decimal without leading zeros, can collide.
+	 *
+	 * @param id an ID in use
+	 */
+	public void seen(String id) {
+		long number = number(id);
+		if (number >= 0)
+			advance(number + 1);
+	}
+
+	/**
+	 * @return the ID {@link #next()} would hand out now, as a number
+	 */
+	public long peek() {
+		return next.get();
+	}
+
+	/**
+	 * Makes sure no ID below the floor is handed out from now on
+	 *
+	 * @param floor a number from {@link #peek()}, such as one saved with a log
+	 */
+	public void advance(long floor) {
+		if (floor > next.get())
+			next.accumulateAndGet(floor, Math::max);
+	}
+
+	/**
+	 * @return the number the ID writes, or -1 if {@link #next()} would never
+	 *         write it
+	 */
+	static long number(String id) {
+		int length = id.length();
+		if (length == 0 || length > MAX_DIGITS || (length > 1 && id.charAt(0) == '0'))
+			return -1;
+		long value = 0;
+		for (int i = 0; i < length; i++) {
+			char c = id.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+}
@@ -0,0 +1,175 @@
+package people;
+
+import java.util.Arrays;
+
+/**
+ * Interns person IDs as dense ints, numbered from 0 in the order they are first
+ * seen. IDs are matched case insensitively, as everywhere in
+ * {@link FamilyManager}; each number keeps the spelling it was first seen with.
+ * A table can also be made to match exactly, to intern names. Numbers are never
+ * reused, so they stay valid for the life of the table.
+ */
+final class IdTable {
+
+	/**
+	 * Marks a free slot in {@link #slots}
+	 */
+	private static final int FREE = -1;
+
+	/**
+	 * The normalised ID of each number
+	 */
+	private String[] keys = new String[16];
+
+	/**
+	 * The ID of each number, as first seen. Shares the key's instance when the ID
+	 * is already normalised.
+	 */
+	private String[] names = new String[16];
+
+	/**
+	 * Open addressed hash table of numbers, probed linearly by key hash. Kept at
+	 * most half full.
+	 */
+	private int[] slots = newSlots(32);
+
+	/**
+	 * Count of numbers handed out
+	 */
+	private int size;
+
+	/**
+	 * Estimated bytes of heap the interned strings take
+	 */
+	private long stringBytes;
+
+	/**
+	 * True if strings are matched case insensitively
+	 */
+	private final boolean ignoreCase;
+
+	/**
+	 * Creates a table of person IDs, matched case insensitively
+	 */
+	IdTable() {
+		this(true);
+	}
+
+	/**
+	 * @param ignoreCase true to match strings as {@link FamilyManager} matches IDs,
+	 *                   false to match them exactly
+	 */
+	IdTable(boolean ignoreCase) {
+		this.ignoreCase = ignoreCase;
+	}
+
+	/**
+	 * Looks up an ID. Probes at most every slot once, so a lookup racing an
+	 * intern ends, if perhaps wrongly or with an exception, rather than looping.
+	 * 
+	 * @param id the ID to look up, may be null
+	 * @return the number of the ID, or -1 if it was never interned
+	 */
+	int find(String id) {
+		if (id == null)
+			return -1;
+		String key = key(id);
+		int[] slots = this.slots;
+		String[] keys = this.keys;
+		int mask = slots.length - 1;
+		int i = spread(key.hashCode()) & mask;
+		for (int probes = 0; probes < slots.length; probes++, i = (i + 1) & mask) {
+			int number = slots[i];
+			if (number == FREE)
+				return -1;
+			if (keys[number].equals(key))
+				return number;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param id the ID to intern
+	 * @return the number of the ID, handing out the next one if it is new
+	 */
+	int intern(String id) {
+		String key = key(id);
+		int mask = slots.length - 1;
+		int i = spread(key.hashCode()) & mask;
+		for (;; i = (i + 1) & mask) {
+			int number = slots[i];
+			if (number == FREE)
+				break;
+			if (keys[number].equals(key))
+				return number;
+		}
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			names = Arrays.copyOf(names, size * 2);
+		}
+		int number = size++;
+		keys[number] = key;
+		names[number] = id.equals(key) ? key : id;
+		stringBytes += Rows.string(key) + (names[number] == key ? 0 : Rows.string(id));
+		slots[i] = number;
+		if (size * 2 > slots.length)
+			rehash();
+		return number;
+	}
+
+	/**
+	 * @param number a number handed out by {@link #intern(String)}
+	 * @return the ID as it was first interned
+	 */
+	String name(int number) {
+		return names[number];
+	}
+
+	/**
+	 * @return count of IDs interned; every number is below it
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return estimated bytes of heap the table and its strings take
+	 */
+	long bytes() {
+		return 3 * Rows.ARRAY + 4L * (keys.length + names.length + slots.length) + stringBytes;
+	}
+
+	/**
+	 * Doubles {@link #slots} and reinserts every number
+	 */
+	private void rehash() {
+		slots = newSlots(slots.length * 2);
+		int mask = slots.length - 1;
+		for (int number = 0; number < size; number++) {
+			int i = spread(keys[number].hashCode()) & mask;
+			while (slots[i] != FREE)
+				i = (i + 1) & mask;
+			slots[i] = number;
+		}
+	}
+
+	/**
+	 * @return the string the table matches the ID by
+	 */
+	private String key(String id) {
+		return ignoreCase ? FamilyManager.key(id) : id;
+	}
+
+	private static int[] newSlots(int length) {
+		int[] slots = new int[length];
+		Arrays.fill(slots, FREE);
+		return slots;
+	}
+
+	/**
+	 * Mixes the high bits of a hash into the low ones, which pick the slot
+	 */
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,246 @@
+package people;
+
+import java.util.Arrays;
+
+/**
+ * Rows sorted by a start instant, each with an end instant, kept as a treap in
+ * arrays of primitives. Entries are ordered by start, then row, so every entry
+ * is distinct and removing one needs only its start and row. Each entry also
+ * holds the latest end below it, so the entries whose span holds an instant
+ * are found without looking at the subtrees that end before it.
+ * <p>
+ * Inserts and removals take logarithmic time in expectation. Queries take
+ * logarithmic time plus time for what they find.
+ */
+final class IntervalTreap {
+
+	/**
+	 * Index of no entry
+	 */
+	private static final int NIL = -1;
+
+	private long[] starts = new long[16];
+	private long[] ends = new long[16];
+
+	/**
+	 * Latest end of each entry and the entries below it
+	 */
+	private long[] latest = new long[16];
+	private int[] rows = new int[16];
+	private int[] priorities = new int[16];
+	private int[] lefts = new int[16];
+	private int[] rights = new int[16];
+
+	private int root = NIL;
+
+	/**
+	 * Entries handed out; those freed are chained through {@link #lefts} from
+	 * {@link #free}
+	 */
+	private int used;
+	private int free = NIL;
+	private int size;
+
+	/**
+	 * State of the generator of priorities
+	 */
+	private int seed = 0x2545F491;
+
+	/**
+	 * @return count of entries
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return estimated bytes of heap the tree takes
+	 */
+	long bytes() {
+		return 7 * Rows.ARRAY + (8L * 3 + 4L * 4) * starts.length;
+	}
+
+	/**
+	 * Adds the row, which must not already be held with the same start
+	 *
+	 * @param start the instant the entry is sorted by
+	 * @param end   the instant its span ends, exclusive
+	 */
+	void insert(long start, long end, int row) {
+		int entry = allocate();
+		starts[entry] = start;
+		ends[entry] = end;
+		latest[entry] = end;
+		rows[entry] = row;
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		priorities[entry] = seed;
+		lefts[entry] = NIL;
+		rights[entry] = NIL;
+		root = insert(root, entry);
+		size++;
+	}
+
+	private int insert(int node, int entry) {
+		if (node == NIL)
+			return entry;
+		if (before(entry, node)) {
+			lefts[node] = insert(lefts[node], entry);
+			if (priorities[lefts[node]] > priorities[node])
+				node = rotateRight(node);
+		} else {
+			rights[node] = insert(rights[node], entry);
+			if (priorities[rights[node]] > priorities[node])
+				node = rotateLeft(node);
+		}
+		update(node);
+		return node;
+	}
+
+	/**
+	 * Removes the row held with the start, if there is one
+	 */
+	void remove(long start, int row) {
+		root = remove(root, start, row);
+	}
+
+	private int remove(int node, long start, int row) {
+		if (node == NIL)
+			return NIL;
+		int compare = compare(start, row, node);
+		if (compare < 0) {
+			lefts[node] = remove(lefts[node], start, row);
+		} else if (compare > 0) {
+			rights[node] = remove(rights[node], start, row);
+		} else {
+			int merged = merge(lefts[node], rights[node]);
+			lefts[node] = free;
+			free = node;
+			size--;
+			return merged;
+		}
+		update(node);
+		return node;
+	}
+
+	/**
+	 * @return the two treaps as one, every entry of the first being before every
+	 *         entry of the second
+	 */
+	private int merge(int left, int right) {
+		if (left == NIL)
+			return right;
+		if (right == NIL)
+			return left;
+		if (priorities[left] > priorities[right]) {
+			rights[left] = merge(rights[left], right);
+			update(left);
+			return left;
+		}
+		lefts[right] = merge(left, lefts[right]);
+		update(right);
+		return right;
+	}
+
+	/**
+	 * Adds the rows whose start is within the range, in order of start
+	 *
+	 * @param from earliest start, inclusive
+	 * @param to   latest start, inclusive
+	 */
+	void range(long from, long to, Rows found) {
+		range(root, from, to, found);
+	}
+
+	private void range(int node, long from, long to, Rows found) {
+		while (node != NIL) {
+			if (starts[node] < from) {
+				node = rights[node];
+			} else if (starts[node] > to) {
+				node = lefts[node];
+			} else {
+				range(lefts[node], from, to, found);
+				found.add(rows[node]);
+				node = rights[node];
+			}
+		}
+	}
+
+	/**
+	 * Adds the rows whose span holds the instant: those starting at or before it
+	 * and ending after it, in order of start
+	 */
+	void stab(long instant, Rows found) {
+		stab(root, instant, found);
+	}
+
+	private void stab(int node, long instant, Rows found) {
+		while (node != NIL && latest[node] > instant) {
+			stab(lefts[node], instant, found);
+			if (starts[node] > instant)
+				return;
+			if (ends[node] > instant)
+				found.add(rows[node]);
+			node = rights[node];
+		}
+	}
+
+	private int rotateRight(int node) {
+		int left = lefts[node];
+		lefts[node] = rights[left];
+		rights[left] = node;
+		update(node);
+		update(left);
+		return left;
+	}
+
+	private int rotateLeft(int node) {
+		int right = rights[node];
+		rights[node] = lefts[right];
+		lefts[right] = node;
+		update(node);
+		update(right);
+		return right;
+	}
+
+	/**
+	 * Works out {@link #latest} of the entry from its children
+	 */
+	private void update(int node) {
+		long end = ends[node];
+		if (lefts[node] != NIL)
+			end = Math.max(end, latest[lefts[node]]);
+		if (rights[node] != NIL)
+			end = Math.max(end, latest[rights[node]]);
+		latest[node] = end;
+	}
+
+	private boolean before(int entry, int node) {
+		return compare(starts[entry], rows[entry], node) < 0;
+	}
+
+	private int compare(long start, int row, int node) {
+		int compare = Long.compare(start, starts[node]);
+		return compare != 0 ? compare : Integer.compare(row, rows[node]);
+	}
+
+	private int allocate() {
+		if (free != NIL) {
+			int entry = free;
+			free = lefts[entry];
+			return entry;
+		}
+		if (used == starts.length) {
+			int length = used * 2;
+			starts = Arrays.copyOf(starts, length);
+			ends = Arrays.copyOf(ends, length);
+			latest = Arrays.copyOf(latest, length);
+			rows = Arrays.copyOf(rows, length);
+			priorities = Arrays.copyOf(priorities, length);
+			lefts = Arrays.copyOf(lefts, length);
+			rights = Arrays.copyOf(rights, length);
+		}
+		return used++;
+	}
+}
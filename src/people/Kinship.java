@@ -0,0 +1,217 @@
+package people;
+
+import java.util.Arrays;
+
+/**
+ * Answers how two people in a {@link LinkGraph} are related from cached
+ * ancestor tables. The table of a number lists every ancestor within a fixed
+ * count of generations with its nearest distance, sorted by number, and is
+ * built once by a bounded {@link Lineage} walk. Relating two people is then a
+ * merge of two sorted tables, whose size the generation limit bounds, so bulk
+ * reports pay for each person's walk once rather than for every pair.
+ * <p>
+ * Tables are built on first use. When links change, {@link #changed(int)} drops
+ * the tables that could include the change, and the next query rebuilds them.
+ * If the tables outgrow {@link #BUDGET} they are all dropped and rebuilt as
+ * needed.
+ * <p>
+ * Queries fill the cache, so every method holds this object's monitor; the
+ * {@link Lineage} handed in must not be used elsewhere.
+ */
+final class Kinship {
+
+	/**
+	 * Most ints kept in tables at once, an eighth of the heap
+	 */
+	private static final long BUDGET = Runtime.getRuntime().maxMemory() / 8 / Integer.BYTES;
+
+	private final Lineage lineage;
+
+	/**
+	 * How many generations up tables reach
+	 */
+	private final int generations;
+
+	/**
+	 * Ancestor table of each number, or null until built. Holds pairs of ancestor
+	 * number and distance, sorted by number.
+	 */
+	private int[][] tables = new int[0][];
+
+	/**
+	 * Count of ints in {@link #tables}
+	 */
+	private long cached;
+
+	/**
+	 * Ancestors of the table being built, each packed with its distance
+	 */
+	private long[] ancestors = new long[64];
+
+	/**
+	 * Count of {@link #ancestors}
+	 */
+	private int found;
+
+	/**
+	 * @param lineage     walks the graph to relate people in
+	 * @param generations how many generations up to look for common ancestors
+	 */
+	Kinship(Lineage lineage, int generations) {
+		this.lineage = lineage;
+		this.generations = generations;
+	}
+
+	/**
+	 * @return how many generations up common ancestors are looked for
+	 */
+	int generations() {
+		return generations;
+	}
+
+	/**
+	 * Drops the tables the parents of the number take part in: its own and those
+	 * of its descendants close enough to reach its parents. Call before removing
+	 * the number's children, or after adding them.
+	 */
+	synchronized void changed(int node) {
+		drop(node);
+		lineage.descendants(node, generations - 1, (descendant, generation) -> {
+			drop(descendant);
+			return true;
+		});
+	}
+
+	/**
+	 * Drops every table, after links are loaded in bulk
+	 */
+	synchronized void clear() {
+		tables = new int[0][];
+		cached = 0;
+	}
+
+	/**
+	 * Finds the nearest common ancestors of two numbers. A number counts as its
+	 * own ancestor at distance 0, so a direct line is found as well.
+	 *
+	 * @return the distance from a and the distance from b to the nearest common
+	 *         ancestors, followed by those ancestors; just {@code -1, -1} if they
+	 *         share none within {@link #generations}
+	 */
+	synchronized int[] nearest(int a, int b) {
+		if (a == b)
+			return new int[] { 0, 0, a };
+		int[] tableA = table(a);
+		int[] tableB = table(b);
+		int distance = find(tableB, a);
+		if (distance > 0)
+			return new int[] { 0, distance, a };
+		distance = find(tableA, b);
+		if (distance > 0)
+			return new int[] { distance, 0, b };
+		int[] nearest = { -1, -1, 0, 0 };
+		int length = 2;
+		int i = 0;
+		int j = 0;
+		while (i < tableA.length && j < tableB.length) {
+			int nodeA = tableA[i];
+			int nodeB = tableB[j];
+			if (nodeA < nodeB) {
+				i += 2;
+			} else if (nodeA > nodeB) {
+				j += 2;
+			} else {
+				int da = tableA[i + 1];
+				int db = tableB[j + 1];
+				if (length == 2 || closer(da, db, nearest[0], nearest[1])) {
+					nearest[0] = da;
+					nearest[1] = db;
+					length = 2;
+				}
+				if (da == nearest[0] && db == nearest[1]) {
+					if (length == nearest.length)
+						nearest = Arrays.copyOf(nearest, length * 2);
+					nearest[length++] = nodeA;
+				}
+				i += 2;
+				j += 2;
+			}
+		}
+		return Arrays.copyOf(nearest, length);
+	}
+
+	/**
+	 * @return true if an ancestor at the first distances is nearer than one at the
+	 *         second
+	 */
+	private static boolean closer(int da, int db, int bestA, int bestB) {
+		if (da + db != bestA + bestB)
+			return da + db < bestA + bestB;
+		return Math.max(da, db) < Math.max(bestA, bestB);
+	}
+
+	/**
+	 * @return the distance of the number in the table, or 0 if it is not there
+	 */
+	private static int find(int[] table, int node) {
+		int low = 0;
+		int high = table.length / 2 - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int found = table[middle * 2];
+			if (found < node)
+				low = middle + 1;
+			else if (found > node)
+				high = middle - 1;
+			else
+				return table[middle * 2 + 1];
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the ancestor table of the number, building it first if needed
+	 */
+	synchronized int[] table(int node) {
+		if (node < tables.length && tables[node] != null)
+			return tables[node];
+		if (cached > BUDGET)
+			clear();
+		found = 0;
+		lineage.ancestors(node, generations, this::collect);
+		Arrays.sort(ancestors, 0, found);
+		int[] table = new int[found * 2];
+		for (int i = 0; i < found; i++) {
+			table[i * 2] = (int) (ancestors[i] >>> 32);
+			table[i * 2 + 1] = (int) ancestors[i];
+		}
+		store(node, table);
+		return table;
+	}
+
+	/**
+	 * Adds an ancestor reached while building a table to {@link #ancestors}
+	 *
+	 * @return true to keep walking
+	 */
+	private boolean collect(int ancestor, int generation) {
+		if (found == ancestors.length)
+			ancestors = Arrays.copyOf(ancestors, found * 2);
+		ancestors[found++] = ((long) ancestor << 32) | generation;
+		return true;
+	}
+
+	private void store(int node, int[] table) {
+		if (node >= tables.length)
+			tables = Arrays.copyOf(tables, Math.max(node + 1, Math.max(16, tables.length * 2)));
+		tables[node] = table;
+		cached += table.length;
+	}
+
+	private void drop(int node) {
+		if (node < tables.length && tables[node] != null) {
+			cached -= tables[node].length;
+			tables[node] = null;
+		}
+	}
+}
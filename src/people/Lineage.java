@@ -0,0 +1,124 @@
+package people;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Walks a {@link LinkGraph} up to ancestors or down to descendants, breadth
+ * first, one generation at a time. The walk runs off an int queue and a visited
+ * bit set, both reused between walks, so it neither recurses nor allocates per
+ * person. Someone reached by more than one path, as in pedigree collapse, is
+ * visited once, at the nearest generation; a loop in bad data ends the walk
+ * instead of running forever.
+ * <p>
+ * A {@code Lineage} is not reentrant: a visitor must not start another walk on
+ * the same one.
+ */
+final class Lineage {
+
+	/**
+	 * Receives the people a walk reaches
+	 */
+	interface Visitor {
+
+		/**
+		 * @param node       the number of the person's ID
+		 * @param generation 1 for parents or children, 2 for grandparents or
+		 *                   grandchildren, and so on
+		 * @return false to stop the walk
+		 */
+		boolean visit(int node, int generation);
+	}
+
+	private final LinkGraph links;
+
+	/**
+	 * The start of the current walk, then the numbers it reached in the order
+	 * they were reached
+	 */
+	private int[] queue = new int[64];
+
+	/**
+	 * Numbers in {@link #queue}
+	 */
+	private final BitSet visited = new BitSet();
+
+	/**
+	 * @param links the graph to walk
+	 */
+	Lineage(LinkGraph links) {
+		this.links = links;
+	}
+
+	/**
+	 * Visits the parents of the start, then their parents, and so on
+	 *
+	 * @param start       the number to start from, which is not visited
+	 * @param generations how many generations to go up
+	 * @param visitor     receives each ancestor
+	 * @return count of ancestors visited
+	 */
+	int ancestors(int start, int generations, Visitor visitor) {
+		return walk(start, generations, true, visitor);
+	}
+
+	/**
+	 * Visits the children of the start, then their children, and so on
+	 *
+	 * @param start       the number to start from, which is not visited
+	 * @param generations how many generations to go down
+	 * @param visitor     receives each descendant
+	 * @return count of descendants visited
+	 */
+	int descendants(int start, int generations, Visitor visitor) {
+		return walk(start, generations, false, visitor);
+	}
+
+	private int walk(int start, int generations, boolean up, Visitor visitor) {
+		queue[0] = start;
+		visited.set(start);
+		int tail = 1;
+		int count = 0;
+		try {
+			int head = 0;
+			for (int generation = 1; generation <= generations && head < tail; generation++) {
+				int end = tail;
+				for (int i = head; i < end; i++) {
+					int node = queue[i];
+					if (up) {
+						tail = reach(links.mother(node), tail);
+						tail = reach(links.father(node), tail);
+					} else {
+						for (int edge = links.firstEdge(node); edge != LinkGraph.NONE; edge = links.nextEdge(edge))
+							tail = reach(links.target(edge), tail);
+					}
+				}
+				for (int i = end; i < tail; i++) {
+					count++;
+					if (!visitor.visit(queue[i], generation))
+						return count;
+				}
+				head = end;
+			}
+			return count;
+		} finally {
+			for (int i = 0; i < tail; i++)
+				visited.clear(queue[i]);
+		}
+	}
+
+	/**
+	 * Queues the number unless it is {@link LinkGraph#NONE} or already visited
+	 *
+	 * @return the new tail of {@link #queue}
+	 */
+	private int reach(int node, int tail) {
+		if (node == LinkGraph.NONE || visited.get(node))
+			return tail;
+		visited.set(node);
+		if (tail == queue.length)
+			queue = Arrays.copyOf(queue, tail * 2);
+		queue[tail] = node;
+		return tail + 1;
+	}
+}
@@ -0,0 +1,267 @@
+package people;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Parent and child links between the numbers of an {@link IdTable}, held in
+ * primitive arrays. Each number has a mother and a father, or {@link #NONE},
+ * and a chain of child edges in the order the children were added. Walking the
+ * graph allocates nothing:
+ *
+ * <pre>
+ * for (int edge = graph.firstEdge(parent); edge != NONE; edge = graph.nextEdge(edge))
+ * 	visit(graph.target(edge));
+ * </pre>
+ */
+final class LinkGraph {
+
+	/**
+	 * Stands for no parent, or the end of a chain of edges
+	 */
+	static final int NONE = -1;
+
+	/**
+	 * Names the numbers in this graph
+	 */
+	private final IdTable ids;
+
+	/**
+	 * Mother and father of each number
+	 */
+	private int[] mothers = new int[0];
+	private int[] fathers = new int[0];
+
+	/**
+	 * First and last child edge of each number, and the count of edges between
+	 * them
+	 */
+	private int[] firstEdges = new int[0];
+	private int[] lastEdges = new int[0];
+	private int[] childCounts = new int[0];
+
+	/**
+	 * The child and the next edge of each edge
+	 */
+	private int[] targets = new int[16];
+	private int[] nextEdges = new int[16];
+
+	/**
+	 * Count of edges handed out
+	 */
+	private int edges;
+
+	/**
+	 * Count of edges not removed since
+	 */
+	private int links;
+
+	/**
+	 * @param ids names the numbers in this graph
+	 */
+	LinkGraph(IdTable ids) {
+		this.ids = ids;
+	}
+
+	/**
+	 * @return the mother of the number, or {@link #NONE}
+	 */
+	int mother(int number) {
+		return number < mothers.length ? mothers[number] : NONE;
+	}
+
+	/**
+	 * @return the father of the number, or {@link #NONE}
+	 */
+	int father(int number) {
+		return number < fathers.length ? fathers[number] : NONE;
+	}
+
+	/**
+	 * @return true if the number has a mother or a father
+	 */
+	boolean hasParents(int number) {
+		return mother(number) != NONE || father(number) != NONE;
+	}
+
+	/**
+	 * @return the first child edge of the number, or {@link #NONE}
+	 */
+	int firstEdge(int number) {
+		return number < firstEdges.length ? firstEdges[number] : NONE;
+	}
+
+	/**
+	 * @return the child edge after the edge, or {@link #NONE}
+	 */
+	int nextEdge(int edge) {
+		return nextEdges[edge];
+	}
+
+	/**
+	 * @return the child the edge leads to
+	 */
+	int target(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * @return count of the number's children
+	 */
+	int childCount(int number) {
+		return number < childCounts.length ? childCounts[number] : 0;
+	}
+
+	/**
+	 * Records the parents of a child, replacing any it had. The parents' children
+	 * are left as they are.
+	 *
+	 * @param child  the child
+	 * @param mother the mother, or {@link #NONE}
+	 * @param father the father, or {@link #NONE}
+	 */
+	void setParents(int child, int mother, int father) {
+		ensure(child);
+		mothers[child] = mother;
+		fathers[child] = father;
+	}
+
+	/**
+	 * Appends a child to the parent's children
+	 */
+	void addChild(int parent, int child) {
+		ensure(parent);
+		if (edges == targets.length) {
+			targets = Arrays.copyOf(targets, edges * 2);
+			nextEdges = Arrays.copyOf(nextEdges, edges * 2);
+		}
+		int edge = edges++;
+		targets[edge] = child;
+		nextEdges[edge] = NONE;
+		if (firstEdges[parent] == NONE)
+			firstEdges[parent] = edge;
+		else
+			nextEdges[lastEdges[parent]] = edge;
+		lastEdges[parent] = edge;
+		childCounts[parent]++;
+		links++;
+	}
+
+	/**
+	 * @return count of links from a parent to a child
+	 */
+	int links() {
+		return links;
+	}
+
+	/**
+	 * Removes the link from the parent to the child: the child from the parent's
+	 * children, and the parent from the child's parents
+	 */
+	void removeLink(int parent, int child) {
+		int previous = NONE;
+		for (int edge = firstEdge(parent); edge != NONE; edge = nextEdges[edge]) {
+			if (targets[edge] == child) {
+				if (previous == NONE)
+					firstEdges[parent] = nextEdges[edge];
+				else
+					nextEdges[previous] = nextEdges[edge];
+				if (lastEdges[parent] == edge)
+					lastEdges[parent] = previous;
+				childCounts[parent]--;
+				links--;
+				break;
+			}
+			previous = edge;
+		}
+		if (mother(child) == parent)
+			mothers[child] = NONE;
+		if (father(child) == parent)
+			fathers[child] = NONE;
+	}
+
+	/**
+	 * @return the IDs of the number's mother and father, as
+	 *         {@link Person#getParentIDs()}
+	 */
+	String[] parentIDs(int number) {
+		int mother = mother(number);
+		int father = father(number);
+		return new String[] { mother == NONE ? null : ids.name(mother), father == NONE ? null : ids.name(father) };
+	}
+
+	/**
+	 * @return a read only view of the IDs of the number's children, as
+	 *         {@link Person#getChildrenIDs()}
+	 */
+	List<String> childIDs(int number) {
+		return new AbstractList<String>() {
+
+			@Override
+			public String get(int index) {
+				if (index < 0 || index >= size())
+					throw new IndexOutOfBoundsException(index);
+				int edge = firstEdge(number);
+				for (int i = 0; i < index; i++)
+					edge = nextEdges[edge];
+				return ids.name(targets[edge]);
+			}
+
+			@Override
+			public int size() {
+				return childCount(number);
+			}
+
+			@Override
+			public Iterator<String> iterator() {
+				return new Iterator<String>() {
+
+					private int edge = firstEdge(number);
+
+					@Override
+					public boolean hasNext() {
+						return edge != NONE;
+					}
+
+					@Override
+					public String next() {
+						if (edge == NONE)
+							throw new NoSuchElementException();
+						String child = ids.name(targets[edge]);
+						edge = nextEdges[edge];
+						return child;
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Grows the per number arrays to hold the number, and every number the ID
+	 * table has handed out
+	 */
+	private void ensure(int number) {
+		if (number < mothers.length)
+			return;
+		int length = Math.max(Math.max(number + 1, ids.size()), Math.max(16, mothers.length * 2));
+		mothers = grow(mothers, length);
+		fathers = grow(fathers, length);
+		firstEdges = grow(firstEdges, length);
+		lastEdges = grow(lastEdges, length);
+		childCounts = Arrays.copyOf(childCounts, length);
+	}
+
+	/**
+	 * @return a copy of the array of the length, with new slots set to
+	 *         {@link #NONE}
+	 */
+	private static int[] grow(int[] array, int length) {
+		int old = array.length;
+		array = Arrays.copyOf(array, length);
+		Arrays.fill(array, old, length, NONE);
+		return array;
+	}
+}
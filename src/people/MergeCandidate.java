@@ -0,0 +1,45 @@
+package people;
+
+/**
+ * Two records that may be the same person, as found by
+ * {@link FamilyManager#findDuplicates(double, int)}, with how alike they are
+ * from 0 to 1.
+ */
+public final class MergeCandidate {
+
+	private final Person first;
+	private final Person second;
+	private final double score;
+
+	MergeCandidate(Person first, Person second, double score) {
+		this.first = first;
+		this.second = second;
+		this.score = score;
+	}
+
+	/**
+	 * @return the record added first
+	 */
+	public Person getFirst() {
+		return first;
+	}
+
+	/**
+	 * @return the record added later
+	 */
+	public Person getSecond() {
+		return second;
+	}
+
+	/**
+	 * @return how alike the records are, 1 if names, sex and dates all agree
+	 */
+	public double getScore() {
+		return score;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%.2f %s, %s", score, first, second);
+	}
+}
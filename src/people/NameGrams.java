@@ -0,0 +1,297 @@
+package people;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Finds names that are spelled like a query, such as "Quinterro" for
+ * "Quintero". Every distinct name is split into trigrams, padded at both ends,
+ * and each trigram keeps a posting list of the names holding it as an int
+ * array. A search counts the trigrams each name shares with the query, skips
+ * names that share too few to be within the edit distance, and checks the rest,
+ * most shared first, with a bounded edit distance.
+ * <p>
+ * Names are {@link #remove(String) taken out} of the postings once no one
+ * holds them, and put back if they are added again. Searches may run on
+ * several threads at once, but not alongside {@link #add(String)} or
+ * {@link #remove(String)}.
+ */
+final class NameGrams {
+
+	/**
+	 * Pads names so their first and last letters start and end trigrams
+	 */
+	private static final char PAD = 0;
+
+	/**
+	 * Distinct names, numbered in the order they were added
+	 */
+	private final IdTable names = new IdTable(false);
+
+	/**
+	 * Numbers of the names in the postings
+	 */
+	private final BitSet held = new BitSet();
+
+	/**
+	 * Open addressing table of packed trigrams, 0 for an empty slot
+	 */
+	private long[] grams = new long[1024];
+
+	/**
+	 * Number of the trigram in each slot of {@link #grams}
+	 */
+	private int[] numbers = new int[1024];
+
+	/**
+	 * Count of trigrams, each numbered below it
+	 */
+	private int gramCount;
+
+	/**
+	 * Names holding each trigram, in the order they were added
+	 */
+	private int[][] postings = new int[256][];
+	private int[] postingSizes = new int[256];
+
+	/**
+	 * Estimated bytes of heap the arrays in {@link #postings} take
+	 */
+	private long postingBytes;
+
+	/**
+	 * Trigrams shared with the query by each name, one array for each searching
+	 * thread, reset after every search
+	 */
+	private final ThreadLocal<int[]> counts = ThreadLocal.withInitial(() -> new int[256]);
+
+	/**
+	 * Adds the name to the postings of its trigrams, unless it is there already
+	 *
+	 * @return the number of the name
+	 */
+	int add(String name) {
+		int number = names.intern(name);
+		if (held.get(number))
+			return number;
+		held.set(number);
+		for (long gram : trigrams(name)) {
+			int posting = gram(gram, true);
+			int size = postingSizes[posting];
+			int[] holders = postings[posting];
+			if (size == holders.length) {
+				holders = postings[posting] = Arrays.copyOf(holders, size * 2);
+				postingBytes += 4L * size;
+			}
+			// a name added again is numbered below some already held
+			int index = size == 0 || holders[size - 1] < number ? size
+					: -Arrays.binarySearch(holders, 0, size, number) - 1;
+			System.arraycopy(holders, index, holders, index + 1, size - index);
+			holders[index] = number;
+			postingSizes[posting] = size + 1;
+		}
+		return number;
+	}
+
+	/**
+	 * Takes the name out of the postings of its trigrams. Its number is kept
+	 * for when it is added again.
+	 */
+	void remove(String name) {
+		int number = names.find(name);
+		if (number < 0 || !held.get(number))
+			return;
+		held.clear(number);
+		for (long gram : trigrams(name)) {
+			int posting = gram(gram, false);
+			int size = postingSizes[posting];
+			int[] holders = postings[posting];
+			int index = Arrays.binarySearch(holders, 0, size, number);
+			System.arraycopy(holders, index + 1, holders, index, size - index - 1);
+			postingSizes[posting] = size - 1;
+		}
+	}
+
+	/**
+	 * @return estimated bytes of heap the names and postings take
+	 */
+	long bytes() {
+		return names.bytes() + 3 * Rows.ARRAY + 8L * grams.length + 4L * numbers.length
+				+ 4L * postingSizes.length + 4L * postings.length + postingBytes;
+	}
+
+	/**
+	 * @return the name with the number
+	 */
+	String name(int number) {
+		return names.name(number);
+	}
+
+	/**
+	 * Finds the names within an edit distance of the query
+	 *
+	 * @param query       a name, normalised the same way as those added
+	 * @param maxDistance most insertions, deletions and substitutions allowed
+	 * @return pairs of name number and edit distance, nearest first; names
+	 *         sharing more trigrams with the query come first among equals
+	 */
+	int[] search(String query, int maxDistance) {
+		long[] queryGrams = trigrams(query);
+		// each edit breaks at most three trigrams of the query
+		int needed = queryGrams.length - 3 * maxDistance;
+		int count = names.size();
+		int[] shared = counts.get();
+		if (shared.length < count) {
+			shared = new int[Math.max(count, shared.length * 2)];
+			counts.set(shared);
+		}
+
+		int[] candidates = new int[64];
+		int found = 0;
+		if (needed > 0) {
+			for (long gram : queryGrams) {
+				int posting = gram(gram, false);
+				if (posting < 0)
+					continue;
+				int[] holders = postings[posting];
+				for (int i = postingSizes[posting] - 1; i >= 0; i--) {
+					int name = holders[i];
+					if (shared[name]++ == 0) {
+						if (found == candidates.length)
+							candidates = Arrays.copyOf(candidates, found * 2);
+						candidates[found++] = name;
+					}
+				}
+			}
+		} else {
+			// too short for trigrams to rule anything out
+			candidates = new int[count];
+			for (int name = held.nextSetBit(0); name >= 0; name = held.nextSetBit(name + 1))
+				candidates[found++] = name;
+			needed = 0;
+		}
+
+		// sort candidates by trigrams shared, most first, ahead of checking them
+		long[] ranked = new long[found];
+		int kept = 0;
+		for (int i = 0; i < found; i++) {
+			int name = candidates[i];
+			if (shared[name] >= needed)
+				ranked[kept++] = ((long) -shared[name] << 32) | name;
+			shared[name] = 0;
+		}
+		Arrays.sort(ranked, 0, kept);
+
+		long[] matches = new long[kept];
+		int matched = 0;
+		for (int i = 0; i < kept; i++) {
+			int name = (int) ranked[i];
+			int distance = distance(query, names.name(name), maxDistance);
+			if (distance <= maxDistance)
+				matches[matched++] = ((long) distance << 32) | i;
+		}
+		Arrays.sort(matches, 0, matched);
+		int[] result = new int[matched * 2];
+		for (int i = 0; i < matched; i++) {
+			result[i * 2] = (int) ranked[(int) matches[i]];
+			result[i * 2 + 1] = (int) (matches[i] >>> 32);
+		}
+		return result;
+	}
+
+	/**
+	 * Works out the Levenshtein distance, stopping once it passes the limit
+	 *
+	 * @return the distance, or more than the limit if it is over it
+	 */
+	static int distance(String a, String b, int limit) {
+		if (Math.abs(a.length() - b.length()) > limit)
+			return limit + 1;
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++)
+			previous[j] = j;
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			int best = i;
+			char c = a.charAt(i - 1);
+			for (int j = 1; j <= b.length(); j++) {
+				int substitute = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+				current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+				best = Math.min(best, current[j]);
+			}
+			if (best > limit)
+				return limit + 1;
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+
+	/**
+	 * @return the distinct trigrams of the padded name, each packed into a long,
+	 *         in ascending order
+	 */
+	private static long[] trigrams(String name) {
+		int length = name.length();
+		long[] grams = new long[length + 2];
+		for (int i = 0; i < grams.length; i++)
+			grams[i] = ((long) at(name, i - 2) << 32) | ((long) at(name, i - 1) << 16) | at(name, i);
+		Arrays.sort(grams);
+		int distinct = 0;
+		for (int i = 0; i < grams.length; i++) {
+			if (distinct == 0 || grams[i] != grams[distinct - 1])
+				grams[distinct++] = grams[i];
+		}
+		return Arrays.copyOf(grams, distinct);
+	}
+
+	private static char at(String name, int index) {
+		return index < 0 || index >= name.length() ? PAD : name.charAt(index);
+	}
+
+	/**
+	 * @param create true to number the trigram if it is new
+	 * @return the number of the trigram, or -1 if it is new and not created
+	 */
+	private int gram(long gram, boolean create) {
+		int mask = grams.length - 1;
+		int slot = Long.hashCode(gram * 0x9E3779B97F4A7C15L) & mask;
+		while (grams[slot] != 0) {
+			if (grams[slot] == gram)
+				return numbers[slot];
+			slot = (slot + 1) & mask;
+		}
+		if (!create)
+			return -1;
+		if (gramCount == postings.length) {
+			postings = Arrays.copyOf(postings, gramCount * 2);
+			postingSizes = Arrays.copyOf(postingSizes, gramCount * 2);
+		}
+		postings[gramCount] = new int[4];
+		postingBytes += Rows.ARRAY + 4 * 4;
+		grams[slot] = gram;
+		numbers[slot] = gramCount;
+		if (++gramCount * 2 > grams.length)
+			rehash();
+		return gramCount - 1;
+	}
+
+	private void rehash() {
+		long[] oldGrams = grams;
+		int[] oldNumbers = numbers;
+		grams = new long[oldGrams.length * 2];
+		numbers = new int[oldGrams.length * 2];
+		int mask = grams.length - 1;
+		for (int i = 0; i < oldGrams.length; i++) {
+			if (oldGrams[i] == 0)
+				continue;
+			int slot = Long.hashCode(oldGrams[i] * 0x9E3779B97F4A7C15L) & mask;
+			while (grams[slot] != 0)
+				slot = (slot + 1) & mask;
+			grams[slot] = oldGrams[i];
+			numbers[slot] = oldNumbers[i];
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package people;
+
+import java.util.Arrays;
+
+import people.Person.Sex;
+
+/**
+ * Keeps each person as a {@link Person} object holding its own values
+ */
+final class ObjectPersonStore extends PersonStore {
+
+	/**
+	 * Links handed to every person
+	 */
+	private final LinkGraph links;
+
+	/**
+	 * The person in each row, or null once removed
+	 */
+	private Person[] people = new Person[16];
+
+	/**
+	 * Count of rows handed out
+	 */
+	private int rows;
+
+	/**
+	 * Count of people held
+	 */
+	private int size;
+
+	/**
+	 * @param links the links of the people
+	 */
+	ObjectPersonStore(LinkGraph links) {
+		this.links = links;
+	}
+
+	@Override
+	int add(int node, String id, String firstName, String lastName, Sex sex, long birth, long death) {
+		Person dude = new Person(id, firstName, sex);
+		dude.lastName = lastName;
+		dude.birth = birth;
+		dude.death = death;
+		dude.links = links;
+		dude.node = node;
+		if (rows == people.length)
+			people = Arrays.copyOf(people, rows * 2);
+		people[rows] = dude;
+		size++;
+		return rows++;
+	}
+
+	@Override
+	void remove(int row) {
+		if (people[row] != null) {
+			people[row] = null;
+			size--;
+		}
+	}
+
+	@Override
+	int next(int row) {
+		for (row++; row < rows; row++) {
+			if (people[row] != null)
+				return row;
+		}
+		return -1;
+	}
+
+	@Override
+	int rows() {
+		return rows;
+	}
+
+	@Override
+	int size() {
+		return size;
+	}
+
+	@Override
+	int node(int row) {
+		return people[row].node;
+	}
+
+	@Override
+	String id(int row) {
+		return people[row].getId();
+	}
+
+	@Override
+	String firstName(int row) {
+		return people[row].firstName;
+	}
+
+	@Override
+	void setFirstName(int row, String firstName) {
+		people[row].firstName = firstName;
+	}
+
+	@Override
+	String lastName(int row) {
+		return people[row].lastName;
+	}
+
+	@Override
+	void setLastName(int row, String lastName) {
+		people[row].lastName = lastName;
+	}
+
+	@Override
+	Sex sex(int row) {
+		return people[row].sex;
+	}
+
+	@Override
+	void setSex(int row, Sex sex) {
+		people[row].sex = sex;
+	}
+
+	@Override
+	long birth(int row) {
+		return people[row].birth;
+	}
+
+	@Override
+	void setBirth(int row, long birth) {
+		people[row].birth = birth;
+	}
+
+	@Override
+	long death(int row) {
+		return people[row].death;
+	}
+
+	@Override
+	void setDeath(int row, long death) {
+		people[row].death = death;
+	}
+}
@@ -0,0 +1,60 @@
+package people;
+
+/**
+ * Calls and latency of one {@link Metrics.Operation}, as recorded by
+ * {@link Metrics}. Percentiles are the lower bound of their histogram bucket.
+ */
+public final class OperationStats {
+
+	private final String name;
+	private final long count;
+	private final long meanNanos;
+	private final long medianNanos;
+	private final long p99Nanos;
+	private final long maxNanos;
+
+	OperationStats(String name, long count, long meanNanos, long medianNanos, long p99Nanos, long maxNanos) {
+		this.name = name;
+		this.count = count;
+		this.meanNanos = meanNanos;
+		this.medianNanos = medianNanos;
+		this.p99Nanos = p99Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+	/**
+	 * @return the name of the operation
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return calls recorded
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public long getMeanNanos() {
+		return meanNanos;
+	}
+
+	public long getMedianNanos() {
+		return medianNanos;
+	}
+
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[n=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus]", name, count, meanNanos / 1e3,
+				medianNanos / 1e3, p99Nanos / 1e3, maxNanos / 1e3);
+	}
+}
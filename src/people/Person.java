@@ -4,12 +4,16 @@
  */
 package people;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import saveIO.IsoInstant;
+
 /**
- * Defines a individual person
+ * Defines a individual person. A {@code Person} handed out by a
+ * {@link FamilyManager} cannot be edited through its setters; use
+ * {@link FamilyManager#editPerson(String, String, String, Date, Date, Sex)}.
  */
 public class Person {
 	
@@ -38,28 +42,25 @@ public class Person {
 	protected Sex sex;
 	
 	/**
-	 * Date of death
+	 * Epoch milliseconds of death, or {@link IsoInstant#NONE}
 	 */
-	protected Date deathDate;
+	protected long death = IsoInstant.NONE;
 	
 	/**
-	 * Date of birth. 
+	 * Epoch milliseconds of birth, or {@link IsoInstant#NONE}
 	 */
-	protected Date birthday;
+	protected long birth = IsoInstant.NONE;
 	
 	/**
-	 * The mother and father of this {@code Person} </br>
-	 * [1] Father of this {@code Person} </br>
-	 * [0] Mother of this {@code Person} </br>
+	 * The parents and children of this {@code Person}, shared by everyone with
+	 * its ID; null until it is managed by a {@link FamilyManager}
 	 */
-	protected String[] parentIDs;
-	
+	LinkGraph links;
+
 	/**
-	 * This {@code Person}'s children IDs
-	 * @see #id
+	 * The number of {@link #id} in {@link #links}
 	 */
-	protected List<String> childrenIDs;
-	
+	int node = LinkGraph.NONE;
 
 	/**
 	 * Defines a person.
@@ -72,8 +73,6 @@ public class Person {
 		this.id = Id;
 		this.firstName = firstName;
 		this.sex = sex;
-		this.parentIDs = new String[2];
-		this.childrenIDs = new ArrayList<String>();
 	}
 
 	/**
@@ -87,6 +86,7 @@ public class Person {
 	 * @param firstName the firstName to set
 	 */
 	public void setFirstName(String firstName) {
+		checkEditable();
 		this.firstName = firstName;
 	}
 
@@ -101,6 +101,7 @@ public class Person {
 	 * @param lastName the lastName to set
 	 */
 	public void setLastName(String lastName) {
+		checkEditable();
 		this.lastName = lastName;
 	}
 
@@ -123,53 +124,146 @@ public class Person {
 	 * @param sex the sex to set
 	 */
 	public void setSex(Sex sex) {
+		checkEditable();
 		this.sex = sex;
 	}
 
 	/**
-	 * @return the deathDate
+	 * @return epoch milliseconds of death, or {@link IsoInstant#NONE} if not
+	 *         recorded
+	 */
+	public long getDeathMillis() {
+		return death;
+	}
+
+	/**
+	 * @return epoch milliseconds of birth, or {@link IsoInstant#NONE} if not
+	 *         recorded
+	 */
+	public long getBirthMillis() {
+		return birth;
+	}
+
+	/**
+	 * @return a new {@code Date} of death, or null
+	 * @see #getDeathMillis()
 	 */
 	public Date getDeathDate() {
-		return deathDate;
+		return PersonStore.date(getDeathMillis());
 	}
 
 	/**
 	 * @param deathDate the deathDate to set
 	 */
 	public void setDeathDate(Date deathDate) {
-		this.deathDate = deathDate;
+		checkEditable();
+		this.death = PersonStore.millis(deathDate);
 	}
 
 	/**
-	 * @return the birthday
+	 * @return a new {@code Date} of birth, or null
+	 * @see #getBirthMillis()
 	 */
 	public Date getBirthday() {
-		return birthday;
+		return PersonStore.date(getBirthMillis());
 	}
 
 	/**
 	 * @param birthday the birthday to set
 	 */
 	public void setBirthday(Date birthday) {
-		this.birthday = birthday;
+		checkEditable();
+		this.birth = PersonStore.millis(birthday);
 	}
 
 	/**
-	 * @return the parentIDs
+	 * @return a copy of the IDs of this {@code Person}'s parents </br>
+	 *         [0] Mother of this {@code Person}, or null </br>
+	 *         [1] Father of this {@code Person}, or null </br>
 	 */
 	public String[] getParentIDs() {
-		return parentIDs;
+		if (links == null)
+			return new String[2];
+		return links.parentIDs(node);
 	}
 
 	/**
-	 * @return the childrenIDs
+	 * @return a read only view of this {@code Person}'s children IDs
+	 * @see #id
 	 */
 	public List<String> getChildrenIDs() {
-		return childrenIDs;
+		if (links == null)
+			return Collections.emptyList();
+		return links.childIDs(node);
+	}
+
+	/**
+	 * @return true if this {@code Person} is held or was handed out by a
+	 *         {@link FamilyManager}
+	 */
+	boolean isManaged() {
+		return links != null;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException if a manager holds this person, since
+	 *                                       its indexes and journal would miss
+	 *                                       the edit
+	 */
+	private void checkEditable() {
+		if (isManaged())
+			throw new UnsupportedOperationException(
+					"Person under ID: " + getId() + " belongs to a FamilyManager; edit them with editPerson");
 	}
 
 	@Override
 	public String toString() {
-		return String.format("Person[%s %s, ID=%s, Sex=%s]", firstName, lastName, id, sex.toString());
+		return append(new StringBuilder(48), getFirstName(), getLastName(), getId(), getSex()).toString();
+	}
+
+	/**
+	 * Writes a person the way {@link #toString()} does, without a
+	 * {@code Person} to hold them
+	 * @return the builder
+	 */
+	static StringBuilder append(StringBuilder output, String firstName, String lastName, String id, Sex sex) {
+		return output.append("Person[").append(firstName).append(' ').append(lastName).append(", ID=").append(id)
+				.append(", Sex=").append(sex).append(']');
+	}
+
+	/**
+	 * A copy of a person taken under the manager's lock, as handed out by
+	 * queries. It keeps the values and links it was taken with, so it can be
+	 * read without the lock, and cannot be edited.
+	 */
+	static final class Copy extends Person {
+
+		private final String[] parentIDs;
+		private final List<String> childrenIDs;
+
+		Copy(String id, String firstName, String lastName, Sex sex, long birth, long death, String[] parentIDs,
+				List<String> childrenIDs) {
+			super(id, firstName, sex);
+			this.lastName = lastName;
+			this.birth = birth;
+			this.death = death;
+			this.parentIDs = parentIDs;
+			this.childrenIDs = Collections.unmodifiableList(childrenIDs);
+		}
+
+		@Override
+		public String[] getParentIDs() {
+			return parentIDs.clone();
+		}
+
+		@Override
+		public List<String> getChildrenIDs() {
+			return childrenIDs;
+		}
+
+		@Override
+		boolean isManaged() {
+			return true;
+		}
 	}
 }
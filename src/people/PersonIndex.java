@@ -0,0 +1,252 @@
+package people;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import saveIO.IsoInstant;
+
+/**
+ * Secondary indexes over the rows of a {@link PersonStore}: hashes of first and
+ * last names, trigrams of those names, and birth and death dates in order.
+ * Births are held with each person's death, so the people alive at an instant
+ * are found from the same tree. People with no name or date are left out of
+ * that index.
+ * <p>
+ * The index reads a row's values from the store, so {@link #remove(int)} must
+ * be called while the row still holds what {@link #add(int)} saw.
+ */
+final class PersonIndex {
+
+	/**
+	 * Accents left by {@link Normalizer.Form#NFD}
+	 */
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+	private final PersonStore people;
+
+	/**
+	 * Rows of each normalised first name, in ascending order
+	 */
+	private final Map<String, Rows> firstNames = new HashMap<String, Rows>();
+
+	/**
+	 * Rows of each normalised last name, in ascending order
+	 */
+	private final Map<String, Rows> lastNames = new HashMap<String, Rows>();
+
+	/**
+	 * Trigrams of every key in {@link #firstNames} and {@link #lastNames}
+	 */
+	private final NameGrams grams = new NameGrams();
+
+	/**
+	 * Estimated bytes of heap the entries of {@link #firstNames} and
+	 * {@link #lastNames} take, with their names and rows; kept up to date by
+	 * every add and remove so {@link #bytes()} need not walk the names
+	 */
+	private long nameBytes;
+
+	/**
+	 * Rows with a birth date, sorted by it and spanning to their death, or
+	 * forever if it is not known
+	 */
+	private final IntervalTreap births = new IntervalTreap();
+
+	/**
+	 * Rows with a death date, sorted by it
+	 */
+	private final IntervalTreap deaths = new IntervalTreap();
+
+	/**
+	 * @param people the store whose rows are indexed
+	 */
+	PersonIndex(PersonStore people) {
+		this.people = people;
+	}
+
+	/**
+	 * Indexes the row under its current values
+	 */
+	void add(int row) {
+		add(firstNames, people.firstName(row), row);
+		add(lastNames, people.lastName(row), row);
+		long birth = people.birth(row);
+		long death = people.death(row);
+		if (birth != IsoInstant.NONE)
+			births.insert(birth, death == IsoInstant.NONE ? Long.MAX_VALUE : death, row);
+		if (death != IsoInstant.NONE)
+			deaths.insert(death, death, row);
+	}
+
+	/**
+	 * Unindexes the row, which must still hold the values it was indexed under
+	 */
+	void remove(int row) {
+		remove(firstNames, people.firstName(row), row);
+		remove(lastNames, people.lastName(row), row);
+		long birth = people.birth(row);
+		long death = people.death(row);
+		if (birth != IsoInstant.NONE)
+			births.remove(birth, row);
+		if (death != IsoInstant.NONE)
+			deaths.remove(death, row);
+	}
+
+	/**
+	 * @return estimated bytes of heap the indexes take
+	 */
+	long bytes() {
+		return 2 * Rows.ARRAY + 8L * (firstNames.size() + lastNames.size()) + nameBytes + grams.bytes()
+				+ births.bytes() + deaths.bytes();
+	}
+
+	/**
+	 * @return estimated bytes of heap a name's entry takes, with the name and its
+	 *         rows
+	 */
+	private static long entry(String key, Rows rows) {
+		return Rows.OBJECT + 16 + Rows.string(key) + rows.bytes();
+	}
+
+	/**
+	 * @return rows with the first name, ignoring case and accents, in the order
+	 *         they were added
+	 */
+	int[] firstName(String name) {
+		return find(firstNames, name);
+	}
+
+	/**
+	 * @return rows with the last name, ignoring case and accents, in the order
+	 *         they were added
+	 */
+	int[] lastName(String name) {
+		return find(lastNames, name);
+	}
+
+	/**
+	 * Finds the rows whose first or last name is spelled like the specified name.
+	 * Names of up to two letters must match exactly, up to five may be one edit
+	 * away, and longer names two.
+	 *
+	 * @param limit most rows to return
+	 * @return rows with the nearest names first, and each name's rows in the
+	 *         order they were added
+	 */
+	int[] similar(String name, int limit) {
+		String key = normalise(name);
+		Rows found = new Rows();
+		if (key == null)
+			return found.toArray();
+		int maxDistance = key.length() <= 2 ? 0 : key.length() <= 5 ? 1 : 2;
+		int[] matches = grams.search(key, maxDistance);
+		Set<Integer> seen = new HashSet<Integer>();
+		for (int i = 0; i < matches.length && found.size() < limit; i += 2) {
+			String match = grams.name(matches[i]);
+			for (Map<String, Rows> index : List.of(firstNames, lastNames)) {
+				Rows rows = index.get(match);
+				if (rows == null)
+					continue;
+				for (int j = 0; j < rows.size() && found.size() < limit; j++) {
+					if (seen.add(rows.get(j)))
+						found.add(rows.get(j));
+				}
+			}
+		}
+		return found.toArray();
+	}
+
+	/**
+	 * @return rows born within the range, inclusive, in order of birth
+	 */
+	int[] bornBetween(long from, long to) {
+		Rows found = new Rows();
+		births.range(from, to, found);
+		return found.toArray();
+	}
+
+	/**
+	 * @return rows that died within the range, inclusive, in order of death
+	 */
+	int[] diedBetween(long from, long to) {
+		Rows found = new Rows();
+		deaths.range(from, to, found);
+		return found.toArray();
+	}
+
+	/**
+	 * @return rows born at or before the instant and not dead by it, in order of
+	 *         birth
+	 */
+	int[] aliveOn(long instant) {
+		Rows found = new Rows();
+		births.stab(instant, found);
+		return found.toArray();
+	}
+
+	/**
+	 * Folds a name to the key it is indexed under: trimmed, lower case, and
+	 * without accents
+	 *
+	 * @return the key, or null for no name
+	 */
+	static String normalise(String name) {
+		if (name == null)
+			return null;
+		String key = name.strip();
+		if (key.isEmpty())
+			return null;
+		if (!isAscii(key))
+			key = MARKS.matcher(Normalizer.normalize(key, Normalizer.Form.NFD)).replaceAll("");
+		return key.toLowerCase(Locale.ROOT);
+	}
+
+	private static boolean isAscii(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) >= 0x80)
+				return false;
+		}
+		return true;
+	}
+
+	private void add(Map<String, Rows> index, String name, int row) {
+		String key = normalise(name);
+		if (key == null)
+			return;
+		Rows rows = index.get(key);
+		if (rows == null) {
+			rows = new Rows();
+			index.put(key, rows);
+			grams.add(key);
+		} else {
+			nameBytes -= entry(key, rows);
+		}
+		rows.insert(row);
+		nameBytes += entry(key, rows);
+	}
+
+	private void remove(Map<String, Rows> index, String name, int row) {
+		String key = normalise(name);
+		if (key == null)
+			return;
+		Rows rows = index.get(key);
+		if (rows != null && rows.delete(row) && rows.isEmpty()) {
+			nameBytes -= entry(key, rows);
+			index.remove(key);
+			if (!firstNames.containsKey(key) && !lastNames.containsKey(key))
+				grams.remove(key);
+		}
+	}
+
+	private static int[] find(Map<String, Rows> index, String name) {
+		String key = normalise(name);
+		Rows rows = key == null ? null : index.get(key);
+		return rows == null ? new int[0] : rows.toArray();
+	}
+}
@@ -0,0 +1,90 @@
+package people;
+
+import java.util.Date;
+
+import people.Person.Sex;
+import saveIO.IsoInstant;
+
+/**
+ * Holds the values of every person a {@link FamilyManager} manages, one row per
+ * person in the order they were added. Rows are never reused; a removed row is
+ * skipped by {@link #next(int)}. Dates are epoch milliseconds, or
+ * {@link IsoInstant#NONE}.
+ *
+ * @see ObjectPersonStore
+ * @see ColumnarPersonStore
+ */
+abstract class PersonStore {
+
+	/**
+	 * Adds a person
+	 *
+	 * @param node the number of the person's ID in the manager's {@link IdTable}
+	 * @return the row of the new person
+	 */
+	abstract int add(int node, String id, String firstName, String lastName, Sex sex, long birth, long death);
+
+	/**
+	 * Removes the person in the row
+	 */
+	abstract void remove(int row);
+
+	/**
+	 * @return the first row after the specified one that holds a person, or -1;
+	 *         pass -1 for the first row
+	 */
+	abstract int next(int row);
+
+	/**
+	 * @return count of rows handed out; every row is below it
+	 */
+	abstract int rows();
+
+	/**
+	 * @return count of people held
+	 */
+	abstract int size();
+
+	/**
+	 * @return the number of the ID of the person in the row
+	 */
+	abstract int node(int row);
+
+	abstract String id(int row);
+
+	abstract String firstName(int row);
+
+	abstract void setFirstName(int row, String firstName);
+
+	abstract String lastName(int row);
+
+	abstract void setLastName(int row, String lastName);
+
+	abstract Sex sex(int row);
+
+	abstract void setSex(int row, Sex sex);
+
+	abstract long birth(int row);
+
+	abstract void setBirth(int row, long birth);
+
+	abstract long death(int row);
+
+	abstract void setDeath(int row, long death);
+
+	/**
+	 * @return the epoch milliseconds of the date, or {@link IsoInstant#NONE} for
+	 *         null
+	 */
+	static long millis(Date date) {
+		return date == null ? IsoInstant.NONE : date.getTime();
+	}
+
+	/**
+	 * @return the date of the epoch milliseconds, or null for
+	 *         {@link IsoInstant#NONE}
+	 */
+	static Date date(long millis) {
+		return millis == IsoInstant.NONE ? null : new Date(millis);
+	}
+}
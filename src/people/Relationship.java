@@ -0,0 +1,190 @@
+package people;
+
+import java.util.List;
+
+/**
+ * How a relative is related to a person, through their nearest common
+ * ancestors
+ *
+ * @see FamilyManager#relate(String, String)
+ */
+public class Relationship {
+
+	/**
+	 * ID of the person the relationship is seen from
+	 */
+	private String personID;
+
+	/**
+	 * ID of the relative
+	 */
+	private String relativeID;
+
+	/**
+	 * IDs of the nearest common ancestors; the person or the relative for a
+	 * direct line, empty if they are not related
+	 */
+	private List<String> ancestorIDs;
+
+	/**
+	 * Generations from the person up to the common ancestors
+	 */
+	private int generations;
+
+	/**
+	 * Generations from the relative up to the common ancestors
+	 */
+	private int relativeGenerations;
+
+	/**
+	 * Defines a relationship.
+	 * @param personID            the person it is seen from
+	 * @param relativeID          the relative
+	 * @param ancestorIDs         the nearest common ancestors, empty if none
+	 * @param generations         generations from the person to the ancestors
+	 * @param relativeGenerations generations from the relative to the ancestors
+	 */
+	protected Relationship(String personID, String relativeID, List<String> ancestorIDs, int generations,
+			int relativeGenerations) {
+		this.personID = personID;
+		this.relativeID = relativeID;
+		this.ancestorIDs = ancestorIDs;
+		this.generations = generations;
+		this.relativeGenerations = relativeGenerations;
+	}
+
+	/**
+	 * @return the personID
+	 */
+	public String getPersonID() {
+		return personID;
+	}
+
+	/**
+	 * @return the relativeID
+	 */
+	public String getRelativeID() {
+		return relativeID;
+	}
+
+	/**
+	 * @return the IDs of the nearest common ancestors
+	 */
+	public List<String> getAncestorIDs() {
+		return ancestorIDs;
+	}
+
+	/**
+	 * @return generations from the person up to the common ancestors
+	 */
+	public int getGenerations() {
+		return generations;
+	}
+
+	/**
+	 * @return generations from the relative up to the common ancestors
+	 */
+	public int getRelativeGenerations() {
+		return relativeGenerations;
+	}
+
+	/**
+	 * @return true if a common ancestor was found
+	 */
+	public boolean isRelated() {
+		return !ancestorIDs.isEmpty();
+	}
+
+	/**
+	 * @return 1 for first cousins, 2 for second cousins and so on; 0 for siblings
+	 *         and direct lines
+	 */
+	public int getCousinDegree() {
+		return Math.max(0, Math.min(generations, relativeGenerations) - 1);
+	}
+
+	/**
+	 * @return how many generations apart the person and relative are
+	 */
+	public int getRemoved() {
+		return Math.abs(generations - relativeGenerations);
+	}
+
+	/**
+	 * @return what the relative is to the person, such as "grandparent" or
+	 *         "second cousin once removed"
+	 */
+	public String describe() {
+		if (!isRelated())
+			return "not related";
+		if (generations == 0 && relativeGenerations == 0)
+			return "same person";
+		if (generations == 0)
+			return greats(relativeGenerations, "child", "grandchild");
+		if (relativeGenerations == 0)
+			return greats(generations, "parent", "grandparent");
+		// the only common ancestor of a collateral relative makes them a half relative
+		String half = ancestorIDs.size() == 1 ? "half " : "";
+		if (generations == 1 && relativeGenerations == 1)
+			return half + "sibling";
+		if (generations == 1) {
+			int removed = relativeGenerations - 1;
+			return half + greats(removed, "niece", "grandniece") + " or " + greats(removed, "nephew", "grandnephew");
+		}
+		if (relativeGenerations == 1) {
+			int removed = generations - 1;
+			return half + greats(removed, "aunt", "great-aunt") + " or " + greats(removed, "uncle", "great-uncle");
+		}
+		String cousin = half + ordinal(getCousinDegree()) + " cousin";
+		switch (getRemoved()) {
+		case 0:
+			return cousin;
+		case 1:
+			return cousin + " once removed";
+		case 2:
+			return cousin + " twice removed";
+		default:
+			return cousin + " " + getRemoved() + " times removed";
+		}
+	}
+
+	/**
+	 * @return the first name for one generation, the second for two, and the
+	 *         second prefixed with a "great-" for each further generation
+	 */
+	private static String greats(int generations, String one, String two) {
+		if (generations == 1)
+			return one;
+		return "great-".repeat(generations - 2) + two;
+	}
+
+	private static String ordinal(int degree) {
+		switch (degree) {
+		case 1:
+			return "first";
+		case 2:
+			return "second";
+		case 3:
+			return "third";
+		default:
+			int tens = degree % 100;
+			if (tens >= 11 && tens <= 13)
+				return degree + "th";
+			switch (degree % 10) {
+			case 1:
+				return degree + "st";
+			case 2:
+				return degree + "nd";
+			case 3:
+				return degree + "rd";
+			default:
+				return degree + "th";
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Relationship[%s to %s: %s, via %s]", relativeID, personID, describe(), ancestorIDs);
+	}
+}
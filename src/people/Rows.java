@@ -0,0 +1,105 @@
+package people;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of rows of a {@link PersonStore}, kept as an int array.
+ * Rows are either appended with {@link #add(int)}, or kept in ascending order,
+ * which is the order people were added, with {@link #insert(int)} and
+ * {@link #delete(int)}.
+ */
+final class Rows {
+
+	/**
+	 * Estimated bytes of an object header and of an array header, with
+	 * compressed references
+	 */
+	static final int OBJECT = 16;
+	static final int ARRAY = 16;
+
+	private int[] rows;
+	private int size;
+
+	Rows() {
+		this(4);
+	}
+
+	/**
+	 * @param capacity rows held before the array grows
+	 */
+	Rows(int capacity) {
+		rows = new int[Math.max(1, capacity)];
+	}
+
+	void add(int row) {
+		if (size == rows.length)
+			rows = Arrays.copyOf(rows, size * 2);
+		rows[size++] = row;
+	}
+
+	/**
+	 * Adds the row to rows kept in ascending order, unless it is held already
+	 */
+	void insert(int row) {
+		if (size > 0 && rows[size - 1] >= row) {
+			int index = Arrays.binarySearch(rows, 0, size, row);
+			if (index >= 0)
+				return;
+			index = -index - 1;
+			if (size == rows.length)
+				rows = Arrays.copyOf(rows, size * 2);
+			System.arraycopy(rows, index, rows, index + 1, size - index);
+			rows[index] = row;
+			size++;
+			return;
+		}
+		add(row);
+	}
+
+	/**
+	 * Removes the row from rows kept in ascending order
+	 *
+	 * @return false if the row is not held
+	 */
+	boolean delete(int row) {
+		int index = Arrays.binarySearch(rows, 0, size, row);
+		if (index < 0)
+			return false;
+		System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+		size--;
+		return true;
+	}
+
+	int get(int index) {
+		return rows[index];
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return estimated bytes of heap the list takes
+	 */
+	long bytes() {
+		return OBJECT + ARRAY + 4L * rows.length;
+	}
+
+	/**
+	 * @return estimated bytes of heap a string of one byte characters takes
+	 */
+	static long string(String text) {
+		return OBJECT + 8 + ARRAY + text.length();
+	}
+
+	/**
+	 * @return the rows in the order they are held
+	 */
+	int[] toArray() {
+		return Arrays.copyOf(rows, size);
+	}
+}
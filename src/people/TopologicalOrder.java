@@ -0,0 +1,284 @@
+package people;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Keeps the numbers of a {@link LinkGraph} in an order where every parent comes
+ * before its children, so a link that would make someone their own ancestor is
+ * caught before it is made.
+ * <p>
+ * Links are checked one at a time with the Pearce-Kelly algorithm: a link that
+ * already fits the order costs nothing, and one that does not only searches and
+ * reorders the numbers between its two ends. {@link #rebuild(int, List, IdTable)} orders
+ * a whole graph in one linear pass after a load, dropping any links that close a
+ * loop.
+ */
+final class TopologicalOrder {
+
+	private final LinkGraph links;
+
+	/**
+	 * Position of each number in the order. Numbers past the end have never been
+	 * moved and sit at their own number.
+	 */
+	private int[] order = new int[0];
+
+	/**
+	 * Numbers already reached by the current search
+	 */
+	private final BitSet visited = new BitSet();
+
+	/**
+	 * Scratch lists of numbers, reused between checks
+	 */
+	private int[] stack = new int[64];
+	private int[] forward = new int[64];
+	private int[] backward = new int[64];
+
+	/**
+	 * @param links the graph to order
+	 */
+	TopologicalOrder(LinkGraph links) {
+		this.links = links;
+	}
+
+	/**
+	 * @return the position of the number in the order
+	 */
+	int order(int node) {
+		return node < order.length ? order[node] : node;
+	}
+
+	/**
+	 * Moves the child after the parent in the order, if a link from the parent to
+	 * the child can be made without a loop. The link itself is left to the
+	 * caller.
+	 *
+	 * @return false, leaving the order valid, if the child is the parent or one of
+	 *         its ancestors
+	 */
+	boolean fit(int parent, int child) {
+		if (parent == child)
+			return false;
+		int lower = order(child);
+		int upper = order(parent);
+		if (upper < lower)
+			return true;
+
+		// descendants of the child placed no later than the parent
+		int forwardSize = 0;
+		int top = 0;
+		stack = push(stack, top++, child);
+		visited.set(child);
+		boolean loop = false;
+		while (top > 0 && !loop) {
+			int node = stack[--top];
+			forward = push(forward, forwardSize++, node);
+			for (int edge = links.firstEdge(node); edge != LinkGraph.NONE; edge = links.nextEdge(edge)) {
+				int next = links.target(edge);
+				if (next == parent) {
+					loop = true;
+					break;
+				}
+				if (!visited.get(next) && order(next) < upper) {
+					visited.set(next);
+					stack = push(stack, top++, next);
+				}
+			}
+		}
+		for (int i = 0; i < forwardSize; i++)
+			visited.clear(forward[i]);
+		for (int i = 0; i < top; i++)
+			visited.clear(stack[i]);
+		if (loop)
+			return false;
+
+		// ancestors of the parent placed no earlier than the child
+		int backwardSize = 0;
+		stack = push(stack, top++, parent);
+		visited.set(parent);
+		while (top > 0) {
+			int node = stack[--top];
+			backward = push(backward, backwardSize++, node);
+			for (int next : new int[] { links.mother(node), links.father(node) }) {
+				if (next != LinkGraph.NONE && !visited.get(next) && order(next) > lower) {
+					visited.set(next);
+					stack = push(stack, top++, next);
+				}
+			}
+		}
+		for (int i = 0; i < backwardSize; i++)
+			visited.clear(backward[i]);
+
+		reorder(backward, backwardSize, forward, forwardSize);
+		return true;
+	}
+
+	/**
+	 * Gives the ancestors, then the descendants, the positions they held between
+	 * them, each set keeping its own order
+	 */
+	private void reorder(int[] ancestors, int ancestorCount, int[] descendants, int descendantCount) {
+		int count = ancestorCount + descendantCount;
+		ensure(count == 0 ? 0 : max(ancestors, ancestorCount, descendants, descendantCount));
+		sortByOrder(ancestors, ancestorCount);
+		sortByOrder(descendants, descendantCount);
+		int[] positions = new int[count];
+		for (int i = 0; i < ancestorCount; i++)
+			positions[i] = order[ancestors[i]];
+		for (int i = 0; i < descendantCount; i++)
+			positions[ancestorCount + i] = order[descendants[i]];
+		Arrays.sort(positions);
+		for (int i = 0; i < ancestorCount; i++)
+			order[ancestors[i]] = positions[i];
+		for (int i = 0; i < descendantCount; i++)
+			order[descendants[i]] = positions[ancestorCount + i];
+	}
+
+	/**
+	 * Orders every number below the count by Kahn's algorithm, in time linear in
+	 * numbers and links. A link that closes a loop is removed from the graph and
+	 * reported, and the order is built again without it.
+	 *
+	 * @param count    count of numbers in the graph
+	 * @param problems receives a description of each link removed
+	 * @param names    names the numbers in problems
+	 */
+	void rebuild(int count, List<String> problems, IdTable names) {
+		ensure(count - 1);
+		if (kahn(count) == count)
+			return;
+		for (int[] link : loops(count)) {
+			links.removeLink(link[0], link[1]);
+			problems.add("Link making " + names.name(link[1]) + " a child of " + names.name(link[0])
+					+ " closes a loop; removed");
+		}
+		kahn(count);
+	}
+
+	/**
+	 * Orders the numbers below the count that are not in or below a loop
+	 *
+	 * @return count of numbers ordered
+	 */
+	private int kahn(int count) {
+		int[] parents = new int[count];
+		for (int node = 0; node < count; node++) {
+			for (int edge = links.firstEdge(node); edge != LinkGraph.NONE; edge = links.nextEdge(edge)) {
+				int child = links.target(edge);
+				if (child < count)
+					parents[child]++;
+			}
+		}
+		int[] queue = new int[count];
+		int tail = 0;
+		for (int node = 0; node < count; node++) {
+			if (parents[node] == 0)
+				queue[tail++] = node;
+		}
+		for (int head = 0; head < tail; head++) {
+			int node = queue[head];
+			order[node] = head;
+			for (int edge = links.firstEdge(node); edge != LinkGraph.NONE; edge = links.nextEdge(edge)) {
+				int child = links.target(edge);
+				if (child < count && --parents[child] == 0)
+					queue[tail++] = child;
+			}
+		}
+		// numbers left over keep distinct positions after the ordered ones
+		int position = tail;
+		for (int node = 0; node < count; node++) {
+			if (parents[node] > 0)
+				order[node] = position++;
+		}
+		return tail;
+	}
+
+	/**
+	 * Finds links that close loops with a depth first search, without recursion
+	 *
+	 * @return each link as {parent, child}; removing them all leaves no loop
+	 */
+	private List<int[]> loops(int count) {
+		List<int[]> found = new ArrayList<int[]>();
+		// 0 unseen, 1 on the search path, 2 done
+		byte[] state = new byte[count];
+		int[] edges = new int[count];
+		for (int root = 0; root < count; root++) {
+			if (state[root] != 0)
+				continue;
+			int top = 0;
+			stack = push(stack, top++, root);
+			state[root] = 1;
+			edges[root] = links.firstEdge(root);
+			while (top > 0) {
+				int node = stack[top - 1];
+				int edge = edges[node];
+				if (edge == LinkGraph.NONE) {
+					state[node] = 2;
+					top--;
+					continue;
+				}
+				edges[node] = links.nextEdge(edge);
+				int child = links.target(edge);
+				if (child >= count || state[child] == 2)
+					continue;
+				if (state[child] == 1) {
+					found.add(new int[] { node, child });
+					continue;
+				}
+				state[child] = 1;
+				edges[child] = links.firstEdge(child);
+				stack = push(stack, top++, child);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Sorts the numbers by their position in the order
+	 */
+	private void sortByOrder(int[] nodes, int size) {
+		long[] keyed = new long[size];
+		for (int i = 0; i < size; i++)
+			keyed[i] = ((long) order[nodes[i]] << 32) | nodes[i];
+		Arrays.sort(keyed);
+		for (int i = 0; i < size; i++)
+			nodes[i] = (int) keyed[i];
+	}
+
+	private static int max(int[] a, int aSize, int[] b, int bSize) {
+		int max = 0;
+		for (int i = 0; i < aSize; i++)
+			max = Math.max(max, a[i]);
+		for (int i = 0; i < bSize; i++)
+			max = Math.max(max, b[i]);
+		return max;
+	}
+
+	/**
+	 * Grows {@link #order} to hold the number, placing new numbers at their own
+	 * number
+	 */
+	private void ensure(int node) {
+		if (node < order.length)
+			return;
+		int old = order.length;
+		order = Arrays.copyOf(order, Math.max(node + 1, Math.max(16, old * 2)));
+		for (int i = old; i < order.length; i++)
+			order[i] = i;
+	}
+
+	/**
+	 * @return the array with the value at the index, grown if needed
+	 */
+	private static int[] push(int[] array, int index, int value) {
+		if (index == array.length)
+			array = Arrays.copyOf(array, index * 2);
+		array[index] = value;
+		return array;
+	}
+}
@@ -0,0 +1,22 @@
+package people;
+
+/**
+ * Receives the ancestors or descendants of a person, one at a time, once a
+ * {@link FamilyManager} has walked the family tree
+ * 
+ * @see FamilyManager#visitAncestors(String, int, TreeVisitor)
+ * @see FamilyManager#visitDescendants(String, int, TreeVisitor)
+ */
+@FunctionalInterface
+public interface TreeVisitor {
+
+	/**
+	 * @param generation 1 for parents or children, 2 for grandparents or
+	 *                   grandchildren, and so on
+	 * @param personID   the ID of the relative
+	 * @param person     a copy of the relative taken during the walk, or null if
+	 *                   the ID is only known as a parent
+	 * @return false to visit no more relatives
+	 */
+	boolean visit(int generation, String personID, Person person);
+}
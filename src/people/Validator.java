@@ -0,0 +1,215 @@
+package people;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import people.Person.Sex;
+import saveIO.IsoInstant;
+
+/**
+ * Checks every person, link and family of a manager against the
+ * {@link Violation.Rule rules} of a consistent tree on several cores. Rows of
+ * people, numbers of IDs and families are cut into ranges, each range is
+ * checked on a {@link ForkJoinPool}, and the violations of each range are
+ * handed to the caller in order as the range completes, so the first are seen
+ * while the rest are still being checked, and the result is the same on any
+ * number of cores.
+ * <p>
+ * Links are checked from the person who holds each ID, so a link between two
+ * IDs no one holds is not reported. The manager must not change while a check
+ * runs.
+ */
+final class Validator {
+
+	/**
+	 * Rows or numbers checked by each task
+	 */
+	private static final int CHUNK = 1 << 14;
+
+	/**
+	 * Milliseconds a father may die before his child is born
+	 */
+	private static final long GESTATION = 300 * 86_400_000L;
+
+	private final PersonStore people;
+	private final LinkGraph links;
+	private final IdTable ids;
+
+	/**
+	 * Row of the person holding each number, or -1
+	 */
+	private final int[] personIndex;
+
+	/**
+	 * Families of each person, by {@link FamilyManager#key(String) normalised} ID
+	 */
+	private final Map<String, Set<Family>> memberships;
+
+	private final List<Family> families;
+
+	private final ForkJoinPool pool;
+
+	Validator(PersonStore people, LinkGraph links, IdTable ids, int[] personIndex,
+			Map<String, Set<Family>> memberships, List<Family> families, ForkJoinPool pool) {
+		this.people = people;
+		this.links = links;
+		this.ids = ids;
+		this.personIndex = personIndex;
+		this.memberships = memberships;
+		this.families = families;
+		this.pool = pool;
+	}
+
+	/**
+	 * Checks everything, handing each violation to the consumer on the calling
+	 * thread: those of people in row order, then those of links by ID number,
+	 * then empty families
+	 *
+	 * @return count of violations found
+	 */
+	int check(Consumer<Violation> consumer) {
+		List<ForkJoinTask<List<Violation>>> tasks = new ArrayList<ForkJoinTask<List<Violation>>>();
+		int rows = people.rows();
+		for (int from = 0; from < rows; from += CHUNK) {
+			int start = from;
+			tasks.add(pool.submit(() -> people(start, Math.min(rows, start + CHUNK))));
+		}
+		int numbers = Math.min(ids.size(), personIndex.length);
+		for (int from = 0; from < numbers; from += CHUNK) {
+			int start = from;
+			tasks.add(pool.submit(() -> links(start, Math.min(numbers, start + CHUNK))));
+		}
+		tasks.add(pool.submit(this::families));
+
+		int found = 0;
+		try {
+			for (ForkJoinTask<List<Violation>> task : tasks) {
+				for (Violation violation : task.join()) {
+					consumer.accept(violation);
+					found++;
+				}
+			}
+		} finally {
+			for (ForkJoinTask<List<Violation>> task : tasks)
+				task.cancel(false);
+		}
+		return found;
+	}
+
+	/**
+	 * Checks the dates and families of the people in rows {@code [from, to)}
+	 */
+	private List<Violation> people(int from, int to) {
+		List<Violation> found = new ArrayList<Violation>();
+		for (int row = people.next(from - 1); row >= 0 && row < to; row = people.next(row)) {
+			String id = people.id(row);
+			long birth = people.birth(row);
+			long death = people.death(row);
+			if (birth != IsoInstant.NONE && death != IsoInstant.NONE && death < birth)
+				found.add(new Violation(Violation.Rule.DEATH_BEFORE_BIRTH, id,
+						"Person under ID: " + id + " died before being born"));
+			if (!memberships.containsKey(FamilyManager.key(id)))
+				found.add(new Violation(Violation.Rule.NO_FAMILY, id, "Person under ID: " + id + " is in no family"));
+		}
+		return found;
+	}
+
+	/**
+	 * Checks the links of the people holding the numbers {@code [from, to)}
+	 */
+	private List<Violation> links(int from, int to) {
+		List<Violation> found = new ArrayList<Violation>();
+		for (int number = from; number < to; number++) {
+			int row = personIndex[number];
+			if (row < 0)
+				continue;
+			String id = ids.name(number);
+			parent(found, id, row, number, links.mother(number), Sex.MALE, "mother");
+			parent(found, id, row, number, links.father(number), Sex.FEMALE, "father");
+			for (int edge = links.firstEdge(number); edge != LinkGraph.NONE; edge = links.nextEdge(edge)) {
+				int child = links.target(edge);
+				if (!held(child))
+					found.add(new Violation(Violation.Rule.DANGLING_LINK, id,
+							"Person under ID: " + id + " has child " + ids.name(child) + " who does not exist"));
+				if (links.mother(child) != number && links.father(child) != number)
+					found.add(new Violation(Violation.Rule.ASYMMETRIC_LINK, id, "Person under ID: " + id
+							+ " lists child " + ids.name(child) + " who does not name them as a parent"));
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Checks a child against one of their parents
+	 *
+	 * @param child  the number of the child
+	 * @param parent the number of the parent, or {@link LinkGraph#NONE}
+	 * @param wrong  the sex the parent cannot have
+	 * @param role   "mother" or "father"
+	 */
+	private void parent(List<Violation> found, String id, int row, int child, int parent, Sex wrong, String role) {
+		if (parent == LinkGraph.NONE)
+			return;
+		String parentID = ids.name(parent);
+		if (!lists(parent, child))
+			found.add(new Violation(Violation.Rule.ASYMMETRIC_LINK, id, "Person under ID: " + id + " names "
+					+ parentID + " as " + role + " but is not among their children"));
+		if (!held(parent)) {
+			found.add(new Violation(Violation.Rule.DANGLING_LINK, id,
+					"Person under ID: " + id + " has " + role + " " + parentID + " who does not exist"));
+			return;
+		}
+		int parentRow = personIndex[parent];
+		if (people.sex(parentRow) == wrong)
+			found.add(new Violation(Violation.Rule.PARENT_SEX, id, "Person under ID: " + id + " has " + role + " "
+					+ parentID + " recorded as " + (wrong == Sex.MALE ? "male" : "female")));
+		long birth = people.birth(row);
+		if (birth == IsoInstant.NONE)
+			return;
+		long parentBirth = people.birth(parentRow);
+		if (parentBirth != IsoInstant.NONE && parentBirth >= birth)
+			found.add(new Violation(Violation.Rule.PARENT_YOUNGER, id,
+					"Person under ID: " + id + " is not younger than their " + role + " " + parentID));
+		long parentDeath = people.death(parentRow);
+		long allowed = wrong == Sex.FEMALE ? GESTATION : 0;
+		if (parentDeath != IsoInstant.NONE && parentDeath + allowed < birth)
+			found.add(new Violation(Violation.Rule.PARENT_DEAD, id,
+					"Person under ID: " + id + " was born after their " + role + " " + parentID + " died"));
+	}
+
+	/**
+	 * Finds the families with no members
+	 */
+	private List<Violation> families() {
+		List<Violation> found = new ArrayList<Violation>();
+		for (Family fam : families) {
+			if (fam.size == 0)
+				found.add(new Violation(Violation.Rule.EMPTY_FAMILY, fam.getId(),
+						"Family under ID: " + fam.getId() + " has no members"));
+		}
+		return found;
+	}
+
+	/**
+	 * @return true if a person holds the number
+	 */
+	private boolean held(int number) {
+		return number < personIndex.length && personIndex[number] >= 0;
+	}
+
+	/**
+	 * @return true if the child is among the parent's children
+	 */
+	private boolean lists(int parent, int child) {
+		for (int edge = links.firstEdge(parent); edge != LinkGraph.NONE; edge = links.nextEdge(edge)) {
+			if (links.target(edge) == child)
+				return true;
+		}
+		return false;
+	}
+}
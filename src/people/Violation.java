@@ -0,0 +1,84 @@
+package people;
+
+/**
+ * A record that breaks a rule of a consistent family tree, as reported by
+ * {@link FamilyManager#validate(java.util.function.Consumer)}
+ */
+public final class Violation {
+
+	/**
+	 * The rules checked
+	 */
+	public static enum Rule {
+		/**
+		 * A person died before they were born
+		 */
+		DEATH_BEFORE_BIRTH,
+		/**
+		 * A parent was born after their child
+		 */
+		PARENT_YOUNGER,
+		/**
+		 * A parent died before their child was born; fathers are allowed a
+		 * pregnancy's length
+		 */
+		PARENT_DEAD,
+		/**
+		 * A mother recorded as male or a father recorded as female
+		 */
+		PARENT_SEX,
+		/**
+		 * A parent or child ID that no one holds
+		 */
+		DANGLING_LINK,
+		/**
+		 * A child naming a parent who does not list them, or the other way round
+		 */
+		ASYMMETRIC_LINK,
+		/**
+		 * A person who belongs to no family
+		 */
+		NO_FAMILY,
+		/**
+		 * A family with no members
+		 */
+		EMPTY_FAMILY
+	}
+
+	private final Rule rule;
+	private final String id;
+	private final String message;
+
+	Violation(Rule rule, String id, String message) {
+		this.rule = rule;
+		this.id = id;
+		this.message = message;
+	}
+
+	/**
+	 * @return the rule broken
+	 */
+	public Rule getRule() {
+		return rule;
+	}
+
+	/**
+	 * @return the ID of the person, or of the family for
+	 *         {@link Rule#EMPTY_FAMILY}, breaking the rule
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return what is wrong
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public String toString() {
+		return rule + ": " + message;
+	}
+}
@@ -0,0 +1,107 @@
+package saveIO;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A replacement for a file, written to {@code <file>.tmp} and renamed over the
+ * original by {@link #commit()}, so the original stays intact until the
+ * replacement is complete. A leftover {@code .tmp} from a crash is
+ * overwritten, and the replacement gets the same default permissions a new
+ * file would.
+ */
+class AtomicFile implements Closeable {
+
+	/**
+	 * The file being replaced
+	 */
+	private final Path target;
+
+	/**
+	 * The file being written
+	 */
+	private final Path temp;
+
+	private final FileChannel channel;
+
+	/**
+	 * Bytes written so far
+	 */
+	private long length;
+
+	private boolean committed;
+
+	/**
+	 * @param file the file to replace
+	 * @throws IOException if the temporary file cannot be created
+	 */
+	AtomicFile(File file) throws IOException {
+		target = file.getAbsoluteFile().toPath();
+		temp = target.resolveSibling(target.getFileName() + ".tmp");
+		channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer
+	 */
+	void write(ByteBuffer data) throws IOException {
+		while (data.hasRemaining())
+			length += channel.write(data);
+	}
+
+	/**
+	 * @return bytes written so far
+	 */
+	long length() {
+		return length;
+	}
+
+	/**
+	 * Forces the replacement to disk and atomically renames it over the target
+	 * 
+	 * @throws IOException if the file cannot be forced or moved
+	 */
+	void commit() throws IOException {
+		channel.force(true);
+		channel.close();
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		committed = true;
+		syncDirectory();
+	}
+
+	/**
+	 * Discards the replacement unless it was committed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (committed)
+			return;
+		channel.close();
+		Files.deleteIfExists(temp);
+	}
+
+	/**
+	 * Forces the rename to disk. Not every platform can open a directory, so
+	 * failures are ignored.
+	 */
+	private void syncDirectory() {
+		try (FileChannel directory = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+			directory.force(true);
+		} catch (IOException e) {
+			// the rename itself has already happened
+		}
+	}
+}
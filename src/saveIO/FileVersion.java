@@ -0,0 +1,59 @@
+package saveIO;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Identifies one version of a base family log by its size, modification time
+ * and file key. Replacing the log through an {@link AtomicFile} changes all of
+ * them, so files derived from the log, such as its {@link Journal} or
+ * {@link SnapshotWriter snapshot}, can tell whether they still belong to it.
+ */
+final class FileVersion {
+
+	/**
+	 * Bytes {@link #write(File, ByteBuffer)} puts in a header
+	 */
+	static final int SIZE = 3 * 8;
+
+	private FileVersion() {
+	}
+
+	/**
+	 * Puts the current version of the file into the buffer
+	 * 
+	 * @throws IOException if the file's attributes cannot be read
+	 */
+	static void write(File file, ByteBuffer header) throws IOException {
+		for (long part : of(file))
+			header.putLong(part);
+	}
+
+	/**
+	 * Reads a version from the buffer and compares it with the current version of
+	 * the file
+	 * 
+	 * @return true if the file has not changed since the version was written
+	 * @throws IOException if the file's attributes cannot be read
+	 */
+	static boolean matches(File file, ByteBuffer header) throws IOException {
+		boolean same = true;
+		for (long part : of(file)) {
+			if (header.getLong() != part)
+				same = false;
+		}
+		return same;
+	}
+
+	private static long[] of(File file) throws IOException {
+		if (!file.exists())
+			return new long[3];
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		Object key = attributes.fileKey();
+		return new long[] { attributes.size(), attributes.lastModifiedTime().toMillis(),
+				key == null ? 0 : key.hashCode() };
+	}
+}
@@ -0,0 +1,316 @@
+package saveIO;
+
+/**
+ * Parses ISO-8601 instants such as {@code 2001-09-14T10:00:00Z} straight from
+ * bytes into epoch milliseconds. Nothing is thrown for bad input; the
+ * {@link #INVALID} sentinel is returned instead.
+ */
+public final class IsoInstant {
+
+	/**
+	 * Value of the literal {@code null}, meaning no date was recorded
+	 */
+	public static final long NONE = Long.MIN_VALUE;
+
+	/**
+	 * Value returned for text that is not an instant
+	 */
+	public static final long INVALID = Long.MIN_VALUE + 1;
+
+	/**
+	 * Most bytes {@link #format(long, byte[], int)} writes
+	 */
+	public static final int MAX_FORMATTED_LENGTH = 32;
+
+	/**
+	 * Largest year accepted. Keeps every result within the range of
+	 * {@link java.util.Date}
+	 */
+	private static final int MAX_YEAR = 999_999;
+
+	private IsoInstant() {
+	}
+
+	/**
+	 * Parses an instant, or the literal {@code null}, from {@code bytes[from, to)}
+	 * 
+	 * @param bytes the bytes holding the text
+	 * @param from  index of the first byte
+	 * @param to    index after the last byte
+	 * @return epoch milliseconds, {@link #NONE} for {@code null} or
+	 *         {@link #INVALID} if the text is not an instant
+	 */
+	public static long parse(byte[] bytes, int from, int to) {
+		int length = to - from;
+		if (length == 4 && bytes[from] == 'n' && bytes[from + 1] == 'u' && bytes[from + 2] == 'l'
+				&& bytes[from + 3] == 'l')
+			return NONE;
+
+		int p = from;
+		// year: four digits, or a sign followed by at least four digits
+		boolean negative = false;
+		boolean signed = false;
+		if (p < to && (bytes[p] == '+' || bytes[p] == '-')) {
+			negative = bytes[p] == '-';
+			signed = true;
+			p++;
+		}
+		int yearStart = p;
+		long year = 0;
+		while (p < to && isDigit(bytes[p])) {
+			year = year * 10 + (bytes[p] - '0');
+			if (year > MAX_YEAR)
+				return INVALID;
+			p++;
+		}
+		int yearDigits = p - yearStart;
+		if (yearDigits < 4 || (yearDigits > 4 && !signed))
+			return INVALID;
+		if (negative)
+			year = -year;
+
+		int month = field(bytes, p, to, '-');
+		int day = field(bytes, p + 3, to, '-');
+		int hour = field(bytes, p + 6, to, 'T');
+		int minute = field(bytes, p + 9, to, ':');
+		if (month < 0 || day < 0 || hour < 0 || minute < 0)
+			return INVALID;
+		p += 12;
+
+		int second = field(bytes, p, to, ':');
+		if (second < 0)
+			return INVALID;
+		p += 3;
+		long millis = 0;
+		if (p < to && bytes[p] == '.') {
+			p++;
+			int fractionStart = p;
+			long scale = 100;
+			while (p < to && isDigit(bytes[p])) {
+				millis += (bytes[p] - '0') * scale;
+				scale /= 10;
+				p++;
+			}
+			if (p - fractionStart > 9)
+				return INVALID;
+		}
+
+		// 24:00:00 is the end of the day
+		boolean endOfDay = hour == 24 && minute == 0 && second == 0 && millis == 0;
+		if (month < 1 || month > 12 || day < 1 || day > monthLength(year, month) || (hour > 23 && !endOfDay)
+				|| minute > 59 || second > 59)
+			return INVALID;
+
+		// zone: Z or an offset of the form +HH:MM
+		int offsetSeconds;
+		if (p < to && bytes[p] == 'Z') {
+			offsetSeconds = 0;
+			p++;
+		} else if (p < to && (bytes[p] == '+' || bytes[p] == '-')) {
+			int offsetHours = field(bytes, p, to, bytes[p]);
+			int offsetMinutes = field(bytes, p + 3, to, ':');
+			if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59)
+				return INVALID;
+			offsetSeconds = offsetHours * 3600 + offsetMinutes * 60;
+			if (bytes[p] == '-')
+				offsetSeconds = -offsetSeconds;
+			p += 6;
+		} else {
+			return INVALID;
+		}
+		if (p != to)
+			return INVALID;
+
+		long seconds = toEpochDay(year, month, day) * 86400L + hour * 3600 + minute * 60 + second - offsetSeconds;
+		return seconds * 1000 + millis;
+	}
+
+	/**
+	 * Parses an instant, or the literal {@code null}, from text
+	 * 
+	 * @param text the text to parse
+	 * @return epoch milliseconds, {@link #NONE} for {@code null} or
+	 *         {@link #INVALID} if the text is not an instant
+	 */
+	public static long parse(CharSequence text) {
+		byte[] bytes = new byte[text.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			char c = text.charAt(i);
+			if (c >= 0x80)
+				return INVALID;
+			bytes[i] = (byte) c;
+		}
+		return parse(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Parses a calendar date such as {@code 2001-09-14}
+	 * 
+	 * @param text the text to parse
+	 * @return the epoch day of the date, or {@link #INVALID} if the text is not a
+	 *         date
+	 */
+	public static long parseDate(CharSequence text) {
+		if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-')
+			return INVALID;
+		int year = digits(text, 0, 4);
+		int month = digits(text, 5, 7);
+		int day = digits(text, 8, 10);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > monthLength(year, month))
+			return INVALID;
+		return toEpochDay(year, month, day);
+	}
+
+	/**
+	 * @return the value of the decimal digits in {@code text[from, to)}, or -1
+	 *         if one is not a digit
+	 */
+	private static int digits(CharSequence text, int from, int to) {
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Writes the instant the way {@link java.time.Instant#toString()} does, such
+	 * as {@code 2001-09-14T10:00:00Z} or {@code 2001-09-14T10:00:00.250Z}
+	 * 
+	 * @param millis epoch milliseconds
+	 * @param out    the array to write to; needs room for
+	 *               {@link #MAX_FORMATTED_LENGTH} bytes
+	 * @param offset where to start writing
+	 * @return the index after the last byte written
+	 */
+	public static int format(long millis, byte[] out, int offset) {
+		long seconds = Math.floorDiv(millis, 1000);
+		int fraction = Math.floorMod(millis, 1000);
+		long epochDay = Math.floorDiv(seconds, 86400);
+		int secondOfDay = Math.floorMod(seconds, 86400);
+
+		long date = civil(epochDay);
+		long year = date >> 9;
+		int month = (int) (date >> 5) & 0xF;
+		int day = (int) date & 0x1F;
+
+		int p = offset;
+		if (year < 0 || year > 9999) {
+			// rare; let Instant pick the sign and padding
+			String text = java.time.Instant.ofEpochMilli(millis).toString();
+			for (int i = 0; i < text.length(); i++)
+				out[p++] = (byte) text.charAt(i);
+			return p;
+		}
+		p = digits(year, 4, out, p);
+		out[p++] = '-';
+		p = digits(month, 2, out, p);
+		out[p++] = '-';
+		p = digits(day, 2, out, p);
+		out[p++] = 'T';
+		p = digits(secondOfDay / 3600, 2, out, p);
+		out[p++] = ':';
+		p = digits(secondOfDay / 60 % 60, 2, out, p);
+		out[p++] = ':';
+		p = digits(secondOfDay % 60, 2, out, p);
+		if (fraction != 0) {
+			out[p++] = '.';
+			p = digits(fraction, 3, out, p);
+		}
+		out[p++] = 'Z';
+		return p;
+	}
+
+	/**
+	 * @param millis epoch milliseconds
+	 * @return the year of the instant in UTC
+	 */
+	public static long year(long millis) {
+		return civil(Math.floorDiv(millis, 86_400_000L)) >> 9;
+	}
+
+	/**
+	 * Works out the civil date of an epoch day
+	 * 
+	 * @return the year, month and day packed as {@code year << 9 | month << 5 | day}
+	 */
+	private static long civil(long epochDay) {
+		long z = epochDay + 719468;
+		long era = Math.floorDiv(z, 146097);
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int shiftedMonth = (int) ((5 * dayOfYear + 2) / 153);
+		int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+		int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		return year << 9 | month << 5 | day;
+	}
+
+	/**
+	 * Writes the value as a zero padded decimal of the specified width
+	 */
+	private static int digits(long value, int width, byte[] out, int offset) {
+		for (int i = offset + width - 1; i >= offset; i--) {
+			out[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return offset + width;
+	}
+
+	/**
+	 * Reads a separator followed by two digits at {@code bytes[p, p + 3)}
+	 * 
+	 * @return the value of the digits or -1 if the separator or digits are missing
+	 */
+	private static int field(byte[] bytes, int p, int to, int separator) {
+		if (p + 3 > to || bytes[p] != separator || !isDigit(bytes[p + 1]) || !isDigit(bytes[p + 2]))
+			return -1;
+		return (bytes[p + 1] - '0') * 10 + (bytes[p + 2] - '0');
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	/**
+	 * @return whether the proleptic Gregorian year is a leap year
+	 */
+	static boolean isLeapYear(long year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	/**
+	 * @return number of days in the month of the year
+	 */
+	static int monthLength(long year, int month) {
+		switch (month) {
+		case 2:
+			return isLeapYear(year) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/**
+	 * Counts days from 1970-01-01 to the specified date
+	 * 
+	 * @return the epoch day of the date
+	 */
+	static long toEpochDay(long year, int month, int day) {
+		long y = month <= 2 ? year - 1 : year;
+		long era = Math.floorDiv(y, 400);
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+}
@@ -0,0 +1,488 @@
+package saveIO;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import people.Person.Sex;
+
+/**
+ * Append-only log of the edits made since the base family log was written.
+ * Each edit is a small checksummed record; records are buffered and made
+ * durable together by {@link #commit()}, so several edits share one fsync.
+ * The fsync can also be left out of the caller's lock: {@link #writePending()}
+ * under it, then {@link #force()} after it, while new records are added.
+ * <p>
+ * The header holds the {@link FileVersion version} of the base file the journal
+ * applies to. Once the edits are folded back into a new base file the journal
+ * no longer matches it and is discarded, so a crash between writing the base
+ * and {@link #reset() resetting} the journal never replays an edit twice.
+ */
+public class Journal implements Closeable {
+
+	/**
+	 * Receives the edits of a journal as it is replayed
+	 */
+	public static interface Target {
+
+		void createFamily(String familyID) throws Exception;
+
+		void removeFamily(String familyID) throws Exception;
+
+		/**
+		 * @param birth epoch milliseconds or {@link IsoInstant#NONE}
+		 * @param death epoch milliseconds or {@link IsoInstant#NONE}
+		 */
+		void addPerson(String personID, String firstName, String lastName, long birth, long death, Sex sex)
+				throws Exception;
+
+		void addPersonTo(String familyID, String personID) throws Exception;
+
+		void addChild(String motherID, String fatherID, String personID) throws Exception;
+
+		/**
+		 * Null values, and {@link IsoInstant#NONE} dates, are left unchanged
+		 */
+		void editPerson(String personID, String firstName, String lastName, long birth, long death, Sex sex)
+				throws Exception;
+
+		void removePerson(String personID) throws Exception;
+	}
+
+	private static final int MAGIC = 0x414C4A31; // "ALJ1"
+
+	private static final int HEADER_SIZE = 4 + FileVersion.SIZE;
+
+	/**
+	 * Bytes before the payload of a record: its length and checksum
+	 */
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	/**
+	 * Pending bytes written out before a commit
+	 */
+	private static final int FLUSH_SIZE = 1 << 16;
+
+	private static final byte CREATE_FAMILY = 1;
+	private static final byte REMOVE_FAMILY = 2;
+	private static final byte ADD_PERSON = 3;
+	private static final byte ADD_PERSON_TO = 4;
+	private static final byte ADD_CHILD = 5;
+	private static final byte EDIT_PERSON = 6;
+	private static final byte REMOVE_PERSON = 7;
+
+	private static final Sex[] SEXES = Sex.values();
+
+	private final File file;
+
+	private final File base;
+
+	private final FileChannel channel;
+
+	/**
+	 * Records not yet committed
+	 */
+	private ByteBuffer pending = ByteBuffer.allocate(FLUSH_SIZE + 256);
+
+	/**
+	 * Start of the record being encoded in {@link #pending}
+	 */
+	private int recordStart;
+
+	/**
+	 * Length of the journal on disk
+	 */
+	private long length;
+
+	/**
+	 * Records in the journal, committed or not
+	 */
+	private long entries;
+
+	/**
+	 * True once records are written to the file and not yet forced to disk
+	 */
+	private boolean unforced;
+
+	private final CRC32 crc = new CRC32();
+
+	private Journal(File file, File base, FileChannel channel) {
+		this.file = file;
+		this.base = base;
+		this.channel = channel;
+	}
+
+	/**
+	 * Opens the journal of a base file, replaying its edits if it still applies
+	 * to the base. A torn record at the end, left by a crash, is cut off.
+	 * 
+	 * @param file     the journal
+	 * @param base     the base family log the journal applies to
+	 * @param target   receives the replayed edits
+	 * @param problems receives a description of each edit that could not be
+	 *                 replayed
+	 * @return the journal, ready for new edits
+	 * @throws IOException if the journal cannot be read or written
+	 */
+	public static Journal open(File file, File base, Target target, Consumer<String> problems)
+			throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		Journal journal = new Journal(file, base, channel);
+		try {
+			if (!journal.replay(target, problems))
+				journal.reset();
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		return journal;
+	}
+
+	/**
+	 * Replays the journal
+	 * 
+	 * @return false if the journal is empty or belongs to a different base file
+	 */
+	private boolean replay(Target target, Consumer<String> problems) throws IOException {
+		long size = channel.size();
+		if (size < HEADER_SIZE)
+			return false;
+		ByteBuffer data = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE - 8));
+		while (data.hasRemaining() && channel.read(data, data.position()) >= 0)
+			;
+		data.flip();
+		if (data.getInt() != MAGIC || !FileVersion.matches(base, data))
+			return false;
+
+		long valid = HEADER_SIZE;
+		while (data.remaining() >= RECORD_HEADER_SIZE) {
+			int recordLength = data.getInt();
+			int checksum = data.getInt();
+			if (recordLength <= 0 || recordLength > data.remaining())
+				break;
+			crc.reset();
+			crc.update(data.array(), data.position(), recordLength);
+			if ((int) crc.getValue() != checksum)
+				break;
+			ByteBuffer record = data.slice(data.position(), recordLength);
+			data.position(data.position() + recordLength);
+			valid += RECORD_HEADER_SIZE + recordLength;
+			entries++;
+			try {
+				apply(record, target);
+			} catch (Exception e) {
+				problems.accept("Journal entry " + entries + ": " + e.getMessage());
+			}
+		}
+		if (valid < size)
+			channel.truncate(valid);
+		length = valid;
+		return true;
+	}
+
+	/**
+	 * Decodes one record and hands it to the target
+	 */
+	private static void apply(ByteBuffer record, Target target) throws Exception {
+		byte op = record.get();
+		switch (op) {
+		case CREATE_FAMILY:
+			target.createFamily(string(record));
+			break;
+		case REMOVE_FAMILY:
+			target.removeFamily(string(record));
+			break;
+		case ADD_PERSON:
+			target.addPerson(string(record), string(record), string(record), record.getLong(), record.getLong(),
+					sex(record));
+			break;
+		case ADD_PERSON_TO:
+			target.addPersonTo(string(record), string(record));
+			break;
+		case ADD_CHILD:
+			target.addChild(string(record), string(record), string(record));
+			break;
+		case EDIT_PERSON:
+			target.editPerson(string(record), string(record), string(record), record.getLong(), record.getLong(),
+					sex(record));
+			break;
+		case REMOVE_PERSON:
+			target.removePerson(string(record));
+			break;
+		default:
+			throw new IOException("unknown journal operation " + op);
+		}
+	}
+
+	/**
+	 * Records a new family
+	 * 
+	 * @throws IOException if the buffer cannot be flushed
+	 */
+	public void createFamily(String familyID) throws IOException {
+		begin(CREATE_FAMILY);
+		putString(familyID);
+		end();
+	}
+
+	/**
+	 * Records a removed family
+	 * 
+	 * @throws IOException if the buffer cannot be flushed
+	 */
+	public void removeFamily(String familyID) throws IOException {
+		begin(REMOVE_FAMILY);
+		putString(familyID);
+		end();
+	}
+
+	/**
+	 * Records a new person
+	 * 
+	 * @param birth epoch milliseconds or {@link IsoInstant#NONE}
+	 * @param death epoch milliseconds or {@link IsoInstant#NONE}
+	 * @throws IOException if the buffer cannot be flushed
+	 */
+	public void addPerson(String personID, String firstName, String lastName, long birth, long death, Sex sex)
+			throws IOException {
+		begin(ADD_PERSON);
+		putString(personID);
+		putString(firstName);
+		putString(lastName);
+		reserve(17);
+		pending.putLong(birth);
+		pending.putLong(death);
+		putSex(sex);
+		end();
+	}
+
+	/**
+	 * Records a person joining a family
+	 * 
+	 * @throws IOException if the buffer cannot be flushed
+	 */
+	public void addPersonTo(String familyID, String personID) throws IOException {
+		begin(ADD_PERSON_TO);
+		putString(familyID);
+		putString(personID);
+		end();
+	}
+
+	/**
+	 * Records a child linked to its parents
+	 * 
+	 * @throws IOException if the buffer cannot be flushed
+	 */
+	public void addChild(String motherID, String fatherID, String personID) throws IOException {
+		begin(ADD_CHILD);
+		putString(motherID);
+		putString(fatherID);
+		putString(personID);
+		end();
+	}
+
+	/**
+	 * Records an edit; null values, and {@link IsoInstant#NONE} dates, are
+	 * unchanged
+	 * 
+	 * @throws IOException if the buffer cannot be flushed
+	 */
+	public void editPerson(String personID, String firstName, String lastName, long birth, long death, Sex sex)
+			throws IOException {
+		begin(EDIT_PERSON);
+		putString(personID);
+		putString(firstName);
+		putString(lastName);
+		reserve(17);
+		pending.putLong(birth);
+		pending.putLong(death);
+		putSex(sex);
+		end();
+	}
+
+	/**
+	 * Records a removed person
+	 * 
+	 * @throws IOException if the buffer cannot be flushed
+	 */
+	public void removePerson(String personID) throws IOException {
+		begin(REMOVE_PERSON);
+		putString(personID);
+		end();
+	}
+
+	/**
+	 * Writes every pending record and forces them to disk with a single fsync
+	 * 
+	 * @throws IOException if the journal cannot be written
+	 */
+	public void commit() throws IOException {
+		if (writePending())
+			force();
+	}
+
+	/**
+	 * Writes every pending record to the file without forcing them to disk
+	 * 
+	 * @return true if records written so far are yet to be {@link #force()
+	 *         forced}
+	 * @throws IOException if the journal cannot be written
+	 */
+	public boolean writePending() throws IOException {
+		if (pending.position() > 0)
+			flush();
+		boolean written = unforced;
+		unforced = false;
+		return written;
+	}
+
+	/**
+	 * Forces the records written so far to disk with a single fsync. Records may
+	 * be added meanwhile, but the journal must not be {@link #reset()} or
+	 * {@link #close() closed}.
+	 * 
+	 * @throws IOException if the journal cannot be written
+	 */
+	public void force() throws IOException {
+		channel.force(false);
+	}
+
+	/**
+	 * Empties the journal and ties it to the current state of the base file.
+	 * Called once the base file holds every edit.
+	 * 
+	 * @throws IOException if the journal cannot be written
+	 */
+	public void reset() throws IOException {
+		pending.clear();
+		channel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		FileVersion.write(base, header);
+		header.flip();
+		while (header.hasRemaining())
+			channel.write(header, header.position());
+		channel.force(true);
+		length = HEADER_SIZE;
+		entries = 0;
+	}
+
+	/**
+	 * @return bytes in the journal, including records not yet committed
+	 */
+	public long length() {
+		return length + pending.position();
+	}
+
+	/**
+	 * @return records in the journal, including ones not yet committed
+	 */
+	public long entries() {
+		return entries;
+	}
+
+	/**
+	 * @return the journal file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Commits pending records and closes the journal
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			commit();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void begin(byte op) {
+		reserve(RECORD_HEADER_SIZE + 1);
+		recordStart = pending.position();
+		pending.position(recordStart + RECORD_HEADER_SIZE);
+		pending.put(op);
+	}
+
+	/**
+	 * Fills in the length and checksum of the record being encoded. Writes the
+	 * pending records out, without forcing them to disk, once they fill the
+	 * buffer.
+	 */
+	private void end() throws IOException {
+		int payload = recordStart + RECORD_HEADER_SIZE;
+		int recordLength = pending.position() - payload;
+		crc.reset();
+		crc.update(pending.array(), payload, recordLength);
+		pending.putInt(recordStart, recordLength);
+		pending.putInt(recordStart + 4, (int) crc.getValue());
+		entries++;
+		if (pending.position() >= FLUSH_SIZE)
+			flush();
+	}
+
+	/**
+	 * Grows {@link #pending} to fit the specified bytes
+	 */
+	private void reserve(int bytes) {
+		if (pending.remaining() >= bytes)
+			return;
+		ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+		pending.flip();
+		larger.put(pending);
+		pending = larger;
+	}
+
+	private void flush() throws IOException {
+		pending.flip();
+		write(pending);
+		pending.clear();
+	}
+
+	private void write(ByteBuffer data) throws IOException {
+		while (data.hasRemaining())
+			length += channel.write(data, length);
+		unforced = true;
+	}
+
+	private void putString(String text) {
+		if (text == null) {
+			reserve(4);
+			pending.putInt(-1);
+			return;
+		}
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		reserve(4 + bytes.length);
+		pending.putInt(bytes.length);
+		pending.put(bytes);
+	}
+
+	private void putSex(Sex sex) {
+		pending.put((byte) (sex == null ? -1 : sex.ordinal()));
+	}
+
+	private static String string(ByteBuffer record) {
+		int length = record.getInt();
+		if (length < 0)
+			return null;
+		String text = new String(record.array(), record.arrayOffset() + record.position(), length,
+				StandardCharsets.UTF_8);
+		record.position(record.position() + length);
+		return text;
+	}
+
+	private static Sex sex(ByteBuffer record) {
+		byte ordinal = record.get();
+		return ordinal < 0 ? null : SEXES[ordinal];
+	}
+}
@@ -0,0 +1,352 @@
+package saveIO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import people.Person.Sex;
+
+/**
+ * Streams {@link LogRecord records} out of a family log. Lines are cut
+ * straight out of a byte buffer, so there is no regex splitting, and dates are
+ * read with {@link IsoInstant} instead of exceptions. A malformed line is
+ * returned with a {@link LogRecord#getProblem() problem} rather than aborting
+ * the read.
+ */
+public class LogReader implements Closeable {
+
+	/**
+	 * Size of the read buffer
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final byte[] MALE = "MALE".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] FEMALE = "FEMALE".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] HEADER = "#ancestrylog".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] LINK = "#link".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] NEXT_ID = "#nextid".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Source of more bytes; null when the whole log is already in
+	 * {@link #buffer}
+	 */
+	private InputStream in;
+
+	private byte[] buffer;
+
+	/**
+	 * Start of the unread bytes in {@link #buffer}
+	 */
+	private int position;
+
+	/**
+	 * End of the valid bytes in {@link #buffer}
+	 */
+	private int limit;
+
+	/**
+	 * Where the search for the next line end resumes
+	 */
+	private int scanned;
+
+	/**
+	 * Number of the last line read
+	 */
+	private long line;
+
+	/**
+	 * Start of each field in the current line
+	 */
+	private final int[] starts = new int[LogRecord.FIELDS + 1];
+
+	/**
+	 * Number of fields in the current line
+	 */
+	private int fields;
+
+	/**
+	 * End of the current line, without its line separator
+	 */
+	private int lineEnd;
+
+	/**
+	 * The last family ID read. Logs are grouped by family, so consecutive lines
+	 * usually share the same String
+	 */
+	private byte[] lastFamily = new byte[0];
+	private String lastFamilyID;
+
+	/**
+	 * Reads a log from a stream
+	 * 
+	 * @param in the stream to read; closed by {@link #close()}
+	 */
+	public LogReader(InputStream in) {
+		this.in = in;
+		this.buffer = new byte[BUFFER_SIZE];
+	}
+
+	/**
+	 * Reads the lines of a log already held in memory
+	 * 
+	 * @param data      bytes of the log
+	 * @param from      index of the first byte to read
+	 * @param to        index after the last byte to read
+	 * @param firstLine number of the line before {@code from}; zero for the start
+	 *                  of the log
+	 */
+	public LogReader(byte[] data, int from, int to, long firstLine) {
+		this.buffer = data;
+		this.position = from;
+		this.scanned = from;
+		this.limit = to;
+		this.line = firstLine;
+	}
+
+	/**
+	 * Reads the next non-blank line into the record
+	 * 
+	 * @param record the record to overwrite
+	 * @return false if the end of the log was reached
+	 * @throws IOException if the stream cannot be read
+	 */
+	public boolean next(LogRecord record) throws IOException {
+		while (true) {
+			int end = nextLine();
+			if (end < 0)
+				return false;
+			int start = position;
+			position = end < limit ? end + 1 : end;
+			scanned = position;
+			line++;
+			if (end > start && buffer[end - 1] == '\r')
+				end--;
+			if (isBlank(start, end))
+				continue;
+			parse(start, end, record);
+			return true;
+		}
+	}
+
+	/**
+	 * @return number of lines read so far, including blank lines
+	 */
+	public long getLine() {
+		return line;
+	}
+
+	/**
+	 * Finds the end of the line starting at {@link #position}, filling the buffer
+	 * as needed
+	 * 
+	 * @return index of the line's {@code '\n'}, or of the end of the log for a
+	 *         final line without one; -1 if nothing is left
+	 * @throws IOException if the stream cannot be read
+	 */
+	private int nextLine() throws IOException {
+		while (true) {
+			for (int i = scanned; i < limit; i++) {
+				if (buffer[i] == '\n')
+					return i;
+			}
+			scanned = limit;
+			if (!fill())
+				return position < limit ? limit : -1;
+		}
+	}
+
+	/**
+	 * Moves the unread bytes to the front of the buffer and reads more after them
+	 * 
+	 * @return false if there is nothing more to read
+	 * @throws IOException if the stream cannot be read
+	 */
+	private boolean fill() throws IOException {
+		if (in == null)
+			return false;
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			scanned -= position;
+			position = 0;
+		}
+		if (limit == buffer.length)
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		int read = in.read(buffer, limit, buffer.length - limit);
+		if (read < 0)
+			return false;
+		limit += read;
+		return true;
+	}
+
+	/**
+	 * Splits {@code buffer[start, end)} at commas and fills the record
+	 */
+	private void parse(int start, int end, LogRecord record) {
+		record.reset(line);
+		fields = 1;
+		lineEnd = end;
+		starts[0] = start;
+		for (int i = start; i < end; i++) {
+			if (buffer[i] == ',') {
+				if (fields <= LogRecord.FIELDS)
+					starts[fields] = i + 1;
+				fields++;
+			}
+		}
+		if (buffer[start] == '#') {
+			directive(record);
+			return;
+		}
+		if (fields < LogRecord.FIELDS) {
+			record.problem = "expected " + LogRecord.FIELDS + " fields but found " + fields;
+			return;
+		}
+
+		record.familyID = familyID(starts[0], end(0));
+		record.personID = text(1);
+		record.firstName = text(2);
+		record.lastName = text(3);
+		record.sex = sex(starts[4], end(4));
+		record.birth = date(5, "birth", record);
+		record.death = date(6, "death", record);
+		record.complete = true;
+	}
+
+	/**
+	 * Fills the record from a line starting with {@code #}
+	 */
+	private void directive(LogRecord record) {
+		if (is(0, HEADER)) {
+			record.kind = LogRecord.Kind.HEADER;
+			if (fields < 2 || (record.version = (int) Math.min(number(1), Integer.MAX_VALUE)) <= 0) {
+				record.problem = "unreadable header";
+				return;
+			}
+			record.complete = true;
+		} else if (is(0, LINK)) {
+			record.kind = LogRecord.Kind.LINK;
+			if (fields < LogRecord.LINK_FIELDS) {
+				record.problem = "expected " + LogRecord.LINK_FIELDS + " fields in link but found " + fields;
+				return;
+			}
+			record.personID = text(1);
+			record.motherID = optionalText(2);
+			record.fatherID = optionalText(3);
+			record.complete = true;
+		} else if (is(0, NEXT_ID)) {
+			record.kind = LogRecord.Kind.NEXT_ID;
+			if (fields < 2 || (record.nextId = number(1)) < 0) {
+				record.problem = "unreadable next ID";
+				return;
+			}
+			record.complete = true;
+		} else {
+			record.problem = "unknown directive '" + text(0) + "'";
+		}
+	}
+
+	/**
+	 * @return index after the last byte of the field
+	 */
+	private int end(int field) {
+		return field + 1 < fields && field + 1 <= LogRecord.FIELDS ? starts[field + 1] - 1 : lineEnd;
+	}
+
+	/**
+	 * @return true if the field holds exactly the bytes
+	 */
+	private boolean is(int field, byte[] bytes) {
+		return Arrays.equals(buffer, starts[field], end(field), bytes, 0, bytes.length);
+	}
+
+	/**
+	 * @return the field as a positive decimal number, or -1 if it is not one
+	 */
+	private long number(int field) {
+		int from = starts[field];
+		int to = end(field);
+		if (to == from || to - from > 18)
+			return -1;
+		long value = 0;
+		for (int i = from; i < to; i++) {
+			if (buffer[i] < '0' || buffer[i] > '9')
+				return -1;
+			value = value * 10 + (buffer[i] - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * @return the text of the field, or null if it is empty
+	 */
+	private String optionalText(int field) {
+		return end(field) == starts[field] ? null : text(field);
+	}
+
+	/**
+	 * @return the text of the field
+	 */
+	private String text(int field) {
+		int from = starts[field];
+		return new String(buffer, from, end(field) - from, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the family ID in {@code buffer[from, to)}, reusing the previous
+	 *         String when it is the same
+	 */
+	private String familyID(int from, int to) {
+		if (!Arrays.equals(buffer, from, to, lastFamily, 0, lastFamily.length)) {
+			lastFamily = Arrays.copyOfRange(buffer, from, to);
+			lastFamilyID = new String(lastFamily, StandardCharsets.UTF_8);
+		}
+		return lastFamilyID;
+	}
+
+	/**
+	 * @return the sex in {@code buffer[from, to)}; anything unknown is
+	 *         {@link Sex#OTHER}
+	 */
+	private Sex sex(int from, int to) {
+		if (Arrays.equals(buffer, from, to, MALE, 0, MALE.length))
+			return Sex.MALE;
+		if (Arrays.equals(buffer, from, to, FEMALE, 0, FEMALE.length))
+			return Sex.FEMALE;
+		return Sex.OTHER;
+	}
+
+	/**
+	 * Reads a date field. An unreadable date is recorded as a problem and treated
+	 * as no date.
+	 * 
+	 * @return epoch milliseconds or {@link IsoInstant#NONE}
+	 */
+	private long date(int field, String name, LogRecord record) {
+		long date = IsoInstant.parse(buffer, starts[field], end(field));
+		if (date == IsoInstant.INVALID) {
+			record.problem = "unreadable " + name + " date '" + text(field) + "'";
+			return IsoInstant.NONE;
+		}
+		return date;
+	}
+
+	/**
+	 * @return true if {@code buffer[start, end)} is only whitespace
+	 */
+	private boolean isBlank(int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (buffer[i] != ' ' && buffer[i] != '\t')
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (in != null)
+			in.close();
+	}
+}
@@ -0,0 +1,230 @@
+package saveIO;
+
+import people.Person.Sex;
+
+/**
+ * One line of a family log. Most lines are people:
+ * {@code familyID,personID,firstName,lastName,sex,birth,death}. Lines starting
+ * with {@code #} are directives: the {@code #ancestrylog,<version>} header,
+ * the {@code #nextid,<number>} below which no new person ID is handed out and,
+ * after the people, one {@code #link,childID,motherID,fatherID} line per child
+ * with parents. Instances are reused by {@link LogReader#next(LogRecord)} so a
+ * load does not allocate a record per line.
+ */
+public class LogRecord {
+
+	/**
+	 * What a line holds
+	 */
+	public static enum Kind {
+		/**
+		 * A person in a family
+		 */
+		PERSON,
+		/**
+		 * The {@code #ancestrylog} header
+		 */
+		HEADER,
+		/**
+		 * The parents of a child
+		 */
+		LINK,
+		/**
+		 * The {@code #nextid} of the person IDs handed out
+		 */
+		NEXT_ID
+	}
+
+	/**
+	 * Number of fields in a person line
+	 */
+	public static final int FIELDS = 7;
+
+	/**
+	 * Number of fields in a link line
+	 */
+	public static final int LINK_FIELDS = 4;
+
+	/**
+	 * Newest format version; version 1 logs have no header and no links, version
+	 * 2 logs no next ID
+	 */
+	public static final int VERSION = 3;
+
+	/**
+	 * Line number of this record in the log
+	 */
+	long line;
+
+	Kind kind;
+
+	/**
+	 * Whether every field was present
+	 */
+	boolean complete;
+
+	/**
+	 * What is wrong with the line, or null if nothing is
+	 */
+	String problem;
+
+	String familyID;
+
+	String personID;
+
+	String firstName;
+
+	String lastName;
+
+	Sex sex;
+
+	/**
+	 * Epoch milliseconds of birth or {@link IsoInstant#NONE}
+	 */
+	long birth;
+
+	/**
+	 * Epoch milliseconds of death or {@link IsoInstant#NONE}
+	 */
+	long death;
+
+	String motherID;
+
+	String fatherID;
+
+	/**
+	 * Format version named by a header
+	 */
+	int version;
+
+	/**
+	 * Next person ID named by a {@link Kind#NEXT_ID} line
+	 */
+	long nextId;
+
+	/**
+	 * Clears the fields before the next line is read into this record
+	 */
+	void reset(long line) {
+		this.line = line;
+		kind = Kind.PERSON;
+		complete = false;
+		problem = null;
+		familyID = null;
+		personID = null;
+		firstName = null;
+		lastName = null;
+		sex = null;
+		birth = IsoInstant.NONE;
+		death = IsoInstant.NONE;
+		motherID = null;
+		fatherID = null;
+		version = 0;
+		nextId = 0;
+	}
+
+	/**
+	 * @return the line number of this record
+	 */
+	public long getLine() {
+		return line;
+	}
+
+	/**
+	 * @return what the line holds
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return true if every field of the line was read and can be used
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return a description of what is wrong with the line, or null
+	 */
+	public String getProblem() {
+		return problem;
+	}
+
+	/**
+	 * @return the familyID
+	 */
+	public String getFamilyID() {
+		return familyID;
+	}
+
+	/**
+	 * @return the personID; for a {@link Kind#LINK link}, the child
+	 */
+	public String getPersonID() {
+		return personID;
+	}
+
+	/**
+	 * @return the firstName
+	 */
+	public String getFirstName() {
+		return firstName;
+	}
+
+	/**
+	 * @return the lastName
+	 */
+	public String getLastName() {
+		return lastName;
+	}
+
+	/**
+	 * @return the sex
+	 */
+	public Sex getSex() {
+		return sex;
+	}
+
+	/**
+	 * @return epoch milliseconds of birth or {@link IsoInstant#NONE}
+	 */
+	public long getBirth() {
+		return birth;
+	}
+
+	/**
+	 * @return epoch milliseconds of death or {@link IsoInstant#NONE}
+	 */
+	public long getDeath() {
+		return death;
+	}
+
+	/**
+	 * @return the mother of a {@link Kind#LINK link}, or null
+	 */
+	public String getMotherID() {
+		return motherID;
+	}
+
+	/**
+	 * @return the father of a {@link Kind#LINK link}, or null
+	 */
+	public String getFatherID() {
+		return fatherID;
+	}
+
+	/**
+	 * @return the format version of a {@link Kind#HEADER header}
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the number of a {@link Kind#NEXT_ID next ID} line
+	 */
+	public long getNextId() {
+		return nextId;
+	}
+}
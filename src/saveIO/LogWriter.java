@@ -0,0 +1,225 @@
+package saveIO;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import people.Person.Sex;
+
+/**
+ * Writes a family log without ever leaving a half written file behind.
+ * Records are encoded straight into one large buffer, which is flushed to an
+ * {@link AtomicFile}; the previous copy stays intact until {@link #commit()}
+ * renames the new one over it.
+ */
+public class LogWriter implements Closeable {
+
+	/**
+	 * Size of the write buffer
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+
+	/**
+	 * The replacement being written
+	 */
+	private final AtomicFile file;
+
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	/**
+	 * Number of bytes in {@link #buffer}
+	 */
+	private int length;
+
+	private long records;
+
+	/**
+	 * Starts writing a replacement for the file
+	 * 
+	 * @param file the file to replace when {@link #commit() committed}
+	 * @throws IOException if the temporary file cannot be created
+	 */
+	public LogWriter(File file) throws IOException {
+		this.file = new AtomicFile(file);
+	}
+
+	/**
+	 * Writes the {@code #ancestrylog} header naming the format version; must come
+	 * first
+	 * 
+	 * @throws IOException if the buffer cannot be flushed
+	 */
+	public void header() throws IOException {
+		text("#ancestrylog");
+		separator(',');
+		text(Integer.toString(LogRecord.VERSION));
+		separator('\n');
+	}
+
+	/**
+	 * Writes the {@code #nextid} line, below which no new person ID is handed
+	 * out; comes after the header
+	 * 
+	 * @param next the number of the next person ID
+	 * @throws IOException if the buffer cannot be flushed
+	 */
+	public void nextId(long next) throws IOException {
+		text("#nextid");
+		separator(',');
+		text(Long.toString(next));
+		separator('\n');
+	}
+
+	/**
+	 * Appends the parents of a child. Links follow every person record so a
+	 * reader can build the whole graph once the people are known.
+	 * 
+	 * @param personID ID of the child
+	 * @param motherID ID of the mother or null
+	 * @param fatherID ID of the father or null
+	 * @throws IOException if the buffer cannot be flushed
+	 */
+	public void link(String personID, String motherID, String fatherID) throws IOException {
+		text("#link");
+		separator(',');
+		text(personID);
+		separator(',');
+		if (motherID != null)
+			text(motherID);
+		separator(',');
+		if (fatherID != null)
+			text(fatherID);
+		separator('\n');
+	}
+
+	/**
+	 * Appends one person record
+	 * 
+	 * @param familyID  ID of the family
+	 * @param personID  ID of the person
+	 * @param firstName first name; may be null
+	 * @param lastName  last name; may be null
+	 * @param sex       sex of the person
+	 * @param birth     epoch milliseconds of birth or {@link IsoInstant#NONE}
+	 * @param death     epoch milliseconds of death or {@link IsoInstant#NONE}
+	 * @throws IOException if the buffer cannot be flushed
+	 */
+	public void write(String familyID, String personID, String firstName, String lastName, Sex sex, long birth,
+			long death) throws IOException {
+		text(familyID);
+		separator(',');
+		text(personID);
+		separator(',');
+		text(firstName);
+		separator(',');
+		text(lastName);
+		separator(',');
+		text(sex == null ? null : sex.name());
+		separator(',');
+		date(birth);
+		separator(',');
+		date(death);
+		separator('\n');
+		records++;
+	}
+
+	/**
+	 * Flushes, forces the temporary file to disk and atomically renames it over
+	 * the target
+	 * 
+	 * @throws IOException if the file cannot be written or moved
+	 */
+	public void commit() throws IOException {
+		flush();
+		file.commit();
+	}
+
+	/**
+	 * @return number of person records written
+	 */
+	public long getRecords() {
+		return records;
+	}
+
+	/**
+	 * @return number of bytes written
+	 */
+	public long getBytes() {
+		return file.length() + length;
+	}
+
+	/**
+	 * Discards the temporary file unless it was committed
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	private void separator(char c) throws IOException {
+		if (length == buffer.length)
+			flush();
+		buffer[length++] = (byte) c;
+	}
+
+	/**
+	 * Encodes the text as UTF-8 into the buffer; null is written as
+	 * {@code null}
+	 */
+	private void text(String text) throws IOException {
+		if (text == null) {
+			ensure(NULL.length);
+			System.arraycopy(NULL, 0, buffer, length, NULL.length);
+			length += NULL.length;
+			return;
+		}
+		int count = text.length();
+		for (int i = 0; i < count; i++) {
+			ensure(4);
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				buffer[length++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[length++] = (byte) (0xC0 | (c >> 6));
+				buffer[length++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(text.charAt(i + 1))) {
+				int code = Character.toCodePoint(c, text.charAt(++i));
+				buffer[length++] = (byte) (0xF0 | (code >> 18));
+				buffer[length++] = (byte) (0x80 | ((code >> 12) & 0x3F));
+				buffer[length++] = (byte) (0x80 | ((code >> 6) & 0x3F));
+				buffer[length++] = (byte) (0x80 | (code & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				buffer[length++] = '?';
+			} else {
+				buffer[length++] = (byte) (0xE0 | (c >> 12));
+				buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[length++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	private void date(long millis) throws IOException {
+		if (millis == IsoInstant.NONE) {
+			text(null);
+			return;
+		}
+		ensure(IsoInstant.MAX_FORMATTED_LENGTH);
+		length = IsoInstant.format(millis, buffer, length);
+	}
+
+	/**
+	 * Flushes the buffer if fewer than the specified bytes are free
+	 */
+	private void ensure(int bytes) throws IOException {
+		if (buffer.length - length < bytes)
+			flush();
+	}
+
+	private void flush() throws IOException {
+		file.write(ByteBuffer.wrap(buffer, 0, length));
+		length = 0;
+	}
+}
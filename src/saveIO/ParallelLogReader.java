@@ -0,0 +1,222 @@
+package saveIO;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Reads a family log on several cores. The file is cut at line boundaries into
+ * byte ranges, each range is parsed into a local batch on a
+ * {@link ForkJoinPool}, and the batches are handed to the caller in file order
+ * as they complete, so the result is the same as a sequential
+ * {@link LogReader}.
+ */
+public class ParallelLogReader {
+
+	/**
+	 * Smallest range worth handing to a worker
+	 */
+	private static final int MIN_CHUNK = 1 << 20;
+
+	/**
+	 * Largest range read into memory at once
+	 */
+	private static final int MAX_CHUNK = 1 << 26;
+
+	/**
+	 * How many ranges each worker gets, so uneven ranges still balance
+	 */
+	private static final int CHUNKS_PER_WORKER = 4;
+
+	/**
+	 * Pool the ranges are parsed on
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Reads on the common pool
+	 */
+	public ParallelLogReader() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param pool the pool to parse on
+	 */
+	public ParallelLogReader(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Reads every non-blank line of the file. Records are passed to the consumer
+	 * on the calling thread, in file order, with line numbers counted from the
+	 * start of the file. If a range cannot be read, the ranges not yet read are
+	 * cancelled.
+	 * 
+	 * @param file     the log to read
+	 * @param consumer receives each record
+	 * @throws IOException if the file cannot be read
+	 */
+	public void read(File file, Consumer<LogRecord> consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long[] bounds = split(channel);
+			List<ForkJoinTask<Batch>> tasks = new ArrayList<ForkJoinTask<Batch>>(bounds.length - 1);
+			for (int i = 0; i + 1 < bounds.length; i++)
+				tasks.add(pool.submit(new Chunk(channel, bounds[i], bounds[i + 1])));
+
+			long lines = 0;
+			try {
+				for (ForkJoinTask<Batch> task : tasks) {
+					Batch batch = join(task);
+					for (LogRecord record : batch.records) {
+						record.line += lines;
+						consumer.accept(record);
+					}
+					lines += batch.lines;
+				}
+			} finally {
+				for (ForkJoinTask<Batch> task : tasks)
+					task.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * Waits for a batch, rethrowing the worker's I/O failure
+	 */
+	private static Batch join(ForkJoinTask<Batch> task) throws IOException {
+		try {
+			return task.join();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Cuts the file into ranges that each start at the beginning of a line
+	 * 
+	 * @return the offsets where ranges start, followed by the file size
+	 * @throws IOException if the file cannot be read
+	 */
+	private long[] split(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long target = size / ((long) pool.getParallelism() * CHUNKS_PER_WORKER);
+		long chunk = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, target));
+
+		List<Long> bounds = new ArrayList<Long>();
+		bounds.add(0L);
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		long start = 0;
+		while (size - start > chunk) {
+			long end = lineStartAfter(channel, start + chunk, probe);
+			if (end >= size)
+				break;
+			bounds.add(end);
+			start = end;
+		}
+		bounds.add(size);
+
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = bounds.get(i);
+		return result;
+	}
+
+	/**
+	 * @return offset just after the first {@code '\n'} at or after the position,
+	 *         or the file size if there is none
+	 * @throws IOException if the file cannot be read
+	 */
+	private static long lineStartAfter(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+		while (true) {
+			probe.clear();
+			int read = channel.read(probe, position);
+			if (read < 0)
+				return channel.size();
+			for (int i = 0; i < read; i++) {
+				if (probe.get(i) == '\n')
+					return position + i + 1;
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * The records parsed from one range
+	 */
+	private static class Batch {
+
+		/**
+		 * Records, with line numbers counted from the start of the range
+		 */
+		final List<LogRecord> records;
+
+		/**
+		 * Lines in the range, including blank ones
+		 */
+		final long lines;
+
+		Batch(List<LogRecord> records, long lines) {
+			this.records = records;
+			this.lines = lines;
+		}
+	}
+
+	/**
+	 * Reads and parses one range of the file, stopping early if cancelled
+	 */
+	@SuppressWarnings("serial")
+	private static class Chunk extends RecursiveTask<Batch> {
+
+		private final FileChannel channel;
+		private final long start;
+		private final long end;
+
+		Chunk(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected Batch compute() {
+			byte[] data = new byte[(int) (end - start)];
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			try {
+				while (buffer.hasRemaining()) {
+					if (isCancelled())
+						return null;
+					if (channel.read(buffer, start + buffer.position()) < 0)
+						break;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if (isCancelled())
+				return null;
+
+			LogReader reader = new LogReader(data, 0, buffer.position(), 0);
+			List<LogRecord> records = new ArrayList<LogRecord>(data.length / 48 + 1);
+			LogRecord record = new LogRecord();
+			try {
+				while (reader.next(record)) {
+					records.add(record);
+					record = new LogRecord();
+				}
+			} catch (IOException e) {
+				// an in-memory reader has no stream to fail
+				throw new UncheckedIOException(e);
+			}
+			return new Batch(records, reader.getLine());
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package saveIO;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import people.Person.Sex;
+
+/**
+ * Loads a snapshot written by {@link SnapshotWriter} in one sequential read.
+ * Strings are decoded once into the dictionary and every other field is read
+ * as a number.
+ */
+public final class SnapshotReader {
+
+	/**
+	 * Receives the contents of a snapshot
+	 */
+	public static interface Target {
+
+		/**
+		 * The number below which no new person ID is handed out, passed first
+		 */
+		void nextId(long next);
+
+		/**
+		 * A person; people are numbered from zero in the order they are passed
+		 * 
+		 * @param birth    epoch milliseconds or {@link IsoInstant#NONE}
+		 * @param death    epoch milliseconds or {@link IsoInstant#NONE}
+		 * @param motherID ID of the mother or null
+		 * @param fatherID ID of the father or null
+		 * @param children IDs of the children
+		 */
+		void person(String id, String firstName, String lastName, Sex sex, long birth, long death, String motherID,
+				String fatherID, List<String> children);
+
+		/**
+		 * A family, passed after every person
+		 * 
+		 * @param members numbers of the people in the family
+		 */
+		void family(String id, int[] members);
+	}
+
+	private static final Sex[] SEXES = Sex.values();
+
+	private final FileChannel channel;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+
+	private String[] strings;
+
+	private SnapshotReader(FileChannel channel) {
+		this.channel = channel;
+		buffer.flip();
+	}
+
+	/**
+	 * Reads the snapshot if it mirrors the current version of the family log
+	 * 
+	 * @param file   the snapshot
+	 * @param base   the family log the snapshot must mirror
+	 * @param target receives the people and families
+	 * @return false, having read nothing, if there is no snapshot or it belongs
+	 *         to another version of the log or format
+	 * @throws IOException if the snapshot cannot be read or is damaged
+	 */
+	public static boolean read(File file, File base, Target target) throws IOException {
+		if (!file.isFile())
+			return false;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return new SnapshotReader(channel).read(base, target);
+		}
+	}
+
+	private boolean read(File base, Target target) throws IOException {
+		if (!fill(SnapshotWriter.HEADER_SIZE))
+			return false;
+		if (buffer.getInt() != SnapshotWriter.MAGIC || buffer.getInt() != SnapshotWriter.VERSION
+				|| !FileVersion.matches(base, buffer))
+			return false;
+		target.nextId(buffer.getLong());
+		int stringCount = count();
+		int personCount = count();
+		int familyCount = count();
+
+		strings = new String[stringCount];
+		for (int i = 0; i < stringCount; i++) {
+			int length = count();
+			require(length);
+			strings[i] = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		}
+
+		for (int i = 0; i < personCount; i++) {
+			require(4 * 3 + 1 + 8 * 2 + 4 * 3);
+			String id = string();
+			String firstName = string();
+			String lastName = string();
+			byte sex = buffer.get();
+			long birth = buffer.getLong();
+			long death = buffer.getLong();
+			String mother = string();
+			String father = string();
+			int childCount = count();
+			require(4 * childCount);
+			List<String> children = new ArrayList<String>(childCount);
+			for (int c = 0; c < childCount; c++)
+				children.add(string());
+			if (sex >= SEXES.length)
+				throw new IOException("Damaged snapshot: unknown sex " + sex);
+			target.person(id, firstName, lastName, sex < 0 ? null : SEXES[sex], birth, death, mother, father,
+					children);
+		}
+
+		for (int i = 0; i < familyCount; i++) {
+			require(4 * 2);
+			String id = string();
+			int memberCount = count();
+			require(4 * memberCount);
+			int[] members = new int[memberCount];
+			for (int m = 0; m < memberCount; m++) {
+				members[m] = buffer.getInt();
+				if (members[m] < 0 || members[m] >= personCount)
+					throw new IOException("Damaged snapshot: family " + id + " has unknown member " + members[m]);
+			}
+			target.family(id, members);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the dictionary string referenced next, or null
+	 */
+	private String string() throws IOException {
+		int code = buffer.getInt();
+		if (code == -1)
+			return null;
+		if (code < 0 || code >= strings.length)
+			throw new IOException("Damaged snapshot: unknown string " + code);
+		return strings[code];
+	}
+
+	/**
+	 * @return the next int, which must not be negative
+	 */
+	private int count() throws IOException {
+		require(4);
+		int count = buffer.getInt();
+		if (count < 0)
+			throw new IOException("Damaged snapshot: negative count " + count);
+		return count;
+	}
+
+	/**
+	 * Makes sure the buffer holds the specified bytes
+	 * 
+	 * @throws IOException if the snapshot ends first
+	 */
+	private void require(int bytes) throws IOException {
+		if (!fill(bytes))
+			throw new IOException("Damaged snapshot: ends early");
+	}
+
+	/**
+	 * Reads until the buffer holds the specified bytes
+	 * 
+	 * @return false if the snapshot ends first
+	 */
+	private boolean fill(int bytes) throws IOException {
+		if (buffer.remaining() >= bytes)
+			return true;
+		if (buffer.capacity() < bytes) {
+			ByteBuffer larger = ByteBuffer.allocate(bytes);
+			larger.put(buffer);
+			buffer = larger;
+		} else {
+			buffer.compact();
+		}
+		while (buffer.position() < bytes) {
+			if (channel.read(buffer) < 0) {
+				buffer.flip();
+				return false;
+			}
+		}
+		buffer.flip();
+		return true;
+	}
+}
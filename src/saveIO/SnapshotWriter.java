@@ -0,0 +1,210 @@
+package saveIO;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import people.Person.Sex;
+
+/**
+ * Writes a binary snapshot of a family tree, read back by
+ * {@link SnapshotReader} without any text parsing. Layout, all big-endian:
+ * 
+ * <pre>
+ * header:   int magic, int version, base file version, long next ID,
+ *           int strings, int people, int families
+ * strings:  int length, UTF-8 bytes                          (per string)
+ * people:   int id, int firstName, int lastName, byte sex,
+ *           long birth, long death, int mother, int father,
+ *           int children, int child...                       (per person)
+ * families: int id, int members, int person...               (per family)
+ * </pre>
+ * 
+ * Every string is a reference into the dictionary, or -1 for null, so
+ * repeated names and IDs are stored once. Dates are epoch milliseconds with
+ * {@link IsoInstant#NONE} for no date, and family members are indexes of
+ * people in the snapshot.
+ */
+public class SnapshotWriter implements Closeable {
+
+	static final int MAGIC = 0x414C534E; // "ALSN"
+
+	static final int VERSION = 2;
+
+	static final int HEADER_SIZE = 4 + 4 + FileVersion.SIZE + 8 + 3 * 4;
+
+	private final AtomicFile file;
+
+	/**
+	 * The family log this snapshot mirrors
+	 */
+	private final File base;
+
+	private final Map<String, Integer> codes = new HashMap<String, Integer>();
+
+	private final List<String> strings = new ArrayList<String>();
+
+	/**
+	 * Encoded people
+	 */
+	private ByteBuffer people = ByteBuffer.allocate(1 << 16);
+
+	/**
+	 * Encoded families
+	 */
+	private ByteBuffer families = ByteBuffer.allocate(1 << 12);
+
+	private int personCount;
+
+	private int familyCount;
+
+	/**
+	 * Number of the next person ID to hand out
+	 */
+	private long nextId;
+
+	/**
+	 * Starts a snapshot of the family log's current contents
+	 * 
+	 * @param file the snapshot to replace when {@link #commit() committed}
+	 * @param base the family log the snapshot mirrors
+	 * @throws IOException if the temporary file cannot be created
+	 */
+	public SnapshotWriter(File file, File base) throws IOException {
+		this.file = new AtomicFile(file);
+		this.base = base;
+	}
+
+	/**
+	 * Records the number below which no new person ID is handed out
+	 * 
+	 * @param next the number of the next person ID
+	 */
+	public void nextId(long next) {
+		nextId = next;
+	}
+
+	/**
+	 * Adds a person
+	 * 
+	 * @param birth    epoch milliseconds or {@link IsoInstant#NONE}
+	 * @param death    epoch milliseconds or {@link IsoInstant#NONE}
+	 * @param motherID ID of the mother or null
+	 * @param fatherID ID of the father or null
+	 * @param children IDs of the children
+	 * @return index of the person, used for {@link #family(String, int[])}
+	 */
+	public int person(String id, String firstName, String lastName, Sex sex, long birth, long death, String motherID,
+			String fatherID, List<String> children) {
+		people = reserve(people, 4 * 3 + 1 + 8 * 2 + 4 * 3 + 4 * children.size());
+		people.putInt(code(id));
+		people.putInt(code(firstName));
+		people.putInt(code(lastName));
+		people.put((byte) (sex == null ? -1 : sex.ordinal()));
+		people.putLong(birth);
+		people.putLong(death);
+		people.putInt(code(motherID));
+		people.putInt(code(fatherID));
+		people.putInt(children.size());
+		for (String child : children)
+			people.putInt(code(child));
+		return personCount++;
+	}
+
+	/**
+	 * Adds a family
+	 * 
+	 * @param id      ID of the family
+	 * @param members indexes returned by
+	 *                {@link #person(String, String, String, Sex, long, long, String, String, List)}
+	 */
+	public void family(String id, int[] members) {
+		families = reserve(families, 4 * 2 + 4 * members.length);
+		families.putInt(code(id));
+		families.putInt(members.length);
+		for (int member : members)
+			families.putInt(member);
+		familyCount++;
+	}
+
+	/**
+	 * Writes the snapshot and atomically replaces the previous one
+	 * 
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public void commit() throws IOException {
+		ByteBuffer out = ByteBuffer.allocate(1 << 20);
+		out.putInt(MAGIC);
+		out.putInt(VERSION);
+		FileVersion.write(base, out);
+		out.putLong(nextId);
+		out.putInt(strings.size());
+		out.putInt(personCount);
+		out.putInt(familyCount);
+		for (String text : strings) {
+			byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			if (out.remaining() < 4 + bytes.length) {
+				out.flip();
+				file.write(out);
+				out.clear();
+				if (out.capacity() < 4 + bytes.length)
+					out = ByteBuffer.allocate(4 + bytes.length);
+			}
+			out.putInt(bytes.length);
+			out.put(bytes);
+		}
+		out.flip();
+		file.write(out);
+		file.write(people.flip());
+		file.write(families.flip());
+		file.commit();
+	}
+
+	/**
+	 * @return bytes written by {@link #commit()}
+	 */
+	public long getBytes() {
+		return file.length();
+	}
+
+	/**
+	 * Discards the snapshot unless it was committed
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * @return the dictionary reference of the text, or -1 for null
+	 */
+	private int code(String text) {
+		if (text == null)
+			return -1;
+		Integer code = codes.get(text);
+		if (code == null) {
+			code = strings.size();
+			codes.put(text, code);
+			strings.add(text);
+		}
+		return code;
+	}
+
+	/**
+	 * @return the buffer, or a larger copy of it, with room for the bytes
+	 */
+	private static ByteBuffer reserve(ByteBuffer buffer, int bytes) {
+		if (buffer.remaining() >= bytes)
+			return buffer;
+		ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+		buffer.flip();
+		larger.put(buffer);
+		return larger;
+	}
+}
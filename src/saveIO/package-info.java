@@ -0,0 +1 @@
+package saveIO;
\ No newline at end of file